@@ -1,20 +1,26 @@
 package main;
 
+import math.Affine2D;
+import math.Expansion;
 import math.IFS;
 import math.Item;
 import math.Matrix;
+import math.PointBuffer;
 import math.Turtle;
 import org.lwjgl.*;
 import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.*;
 import org.lwjgl.system.*;
+import raster.Mandelbrot;
+import raster.Raster;
+import raster.RasterTexture;
 
 import java.lang.reflect.Array;
+import java.math.BigDecimal;
 import java.nio.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiFunction;
-import java.util.function.UnaryOperator;
 
 import static org.lwjgl.glfw.Callbacks.*;
 import static org.lwjgl.glfw.GLFW.*;
@@ -108,22 +114,24 @@ public class Runner {
                     stepSize *= 1.25;
                     break;
                 case 'W':
-                    y += 50 * stepSize;
+                    panY += 50;
                     break;
                 case 'A':
-                    x -= 50 * stepSize;
+                    panX -= 50;
                     break;
                 case 'S':
-                    y -= 50 * stepSize;
+                    panY -= 50;
                     break;
                 case 'D':
-                    x += 50 * stepSize;
+                    panX += 50;
                     break;
                 case 'Z':
                     iterations = (int) (iterations * 1.25);
+                    refresh = true;
                     break;
                 case 'X':
                     iterations = (int) (iterations * .75);
+                    refresh = true;
                     break;
                 default:
                     redraw = false;
@@ -164,25 +172,36 @@ public class Runner {
             }
 
         }
+
+        // GL objects go before the context.
+        if (screen != null) {
+            screen.close();
+        }
     }
 
-    private double x;
-    private double y;
+    // Pixels to pan by on the next rasterize, the view center itself lives in raster.
+    private int panX;
+    private int panY;
     private double stepSize;
     private int iterations;
 
     private boolean redraw;
 
-    private Item op(Item i) {
-        double x = i.val(0);
-        double y = i.val(1);
+    // Whether the pixels must be recomputed, not just panned.
+    private boolean refresh = true;
+
+    // Rebuilt when iterations change.
+    private Mandelbrot mandelbrot;
 
-        return mandlebrotColor(vector2Dp(x, y), iterations);
+    private Raster.PixelFunction op() {
+        if (mandelbrot == null || mandelbrot.iterations() != iterations) {
+            mandelbrot = new Mandelbrot(iterations);
+        }
+
+        return mandelbrot;
     }
 
     public Runner() {
-        x = 0;
-        y = 0;
         stepSize = .01;
         iterations = 100;
 
@@ -242,38 +261,14 @@ public class Runner {
                 .move(1.0);
     }
 
-    private static Item mandlebrot(Item zn, Item c) {
-        double x = zn.val(0);
-        double y = zn.val(1);
-
-        return vector2Dp((x * x) - (y * y), 2.0 * x * y).plus(c);
-    }
-
-    private static Item mandlebrotColor(Item c, int iterations) {
-        Item z = c;
-        for (int i = 0; i < iterations; i++) {
-            double x = z.val(0);
-            double y = z.val(1);
-
-            z = mandlebrot(z, c);
+    // Reused for every frame's geometry.
+    private final PointBuffer.Pool geometry = new PointBuffer.Pool();
 
-            if ((x * x) + (y * y) > 4) {
-                return item2D(
-                        (iterations - (i + 1.0)) / iterations,
-                        Math.pow((iterations - (i + 1.0)) / iterations, 2.0), 1.0)
-                        .times(i(3).rotate2D(i * Math.PI / 12.0).shift2D(1.0, 1.0).scale2D(.5));
-               //  return item2D(0, 0, 0);
-            }
-        }
+    // theta sweeps from PI / 2 down to PI / 3 and back in fixed steps.
+    private static final double THETA_STEP = .01;
+    private static final int STEPS = (int) Math.ceil((Math.PI / 6) / THETA_STEP);
 
-        return item2D(0, 0, 0);
-//        Item cv = c.minus(z);
-//        double dot = cv.val(0) * cv.val(0) + cv.val(1) + cv.val(1);
-//
-//        return item2D(0.0, 1.0, 1.0).times(i(3).rotate2D(dot * Math.PI));
-    }
-
-    private double theta = Math.PI / 2;
+    private int step = 0;
     private int dir = 1;
 
     private void render() {
@@ -284,16 +279,25 @@ public class Runner {
 
         glClearColor(1.0f, 1.0f, 1.0f, 1.0f);
 
-        Matrix image = quadPulse(theta).iterate(6, sprite2D(0, 0, 1, 0));
+        int[] width = new int[1];
+        int[] height = new int[1];
+        glfwGetWindowSize(window, width, height);
+
+        // Subdivide until segments are under a pixel, no deeper than before.
+        // Branches off the window are culled.
+        Expansion pulse = Expansion.of(quadPulse((Math.PI / 2) - (step * THETA_STEP)))
+                .viewport(viewport(width[0], height[0]), width[0], height[0])
+                .tolerance(1)
+                .maxDepth(6);
 
-        glColor3d(0, 0, 0);
-        glBegin(GL_LINES);
-        image.draw2D();
-        glEnd();
+        try (PointBuffer image = pulse.expand(sprite2D(0, 0, 1, 0), geometry)) {
+            glColor3d(0, 0, 0);
+            image.draw2D(GL_LINES);
+        }
 
-        theta += (dir * .01);
+        step += dir;
 
-        if ((dir == 1 && theta >= Math.PI / 2) || (dir == -1 && theta <= Math.PI / 3)) {
+        if (step == 0 || step == STEPS) {
             dir *= -1;
         }
 
@@ -333,43 +337,50 @@ public class Runner {
         glfwSwapBuffers(window); // swap the color buffers
     }
 
-    private void rasterize(UnaryOperator<Item> f) {
-        glPointSize(2.0f);
-
-        glPushMatrix();
-        glLoadIdentity();
+    // From GL's default [-1, 1] view to window pixels.
+    private static Affine2D viewport(int width, int height) {
+        return Affine2D.i().shift2D(1, 1).scale2D(width / 2.0, height / 2.0);
+    }
 
-        int[] widthArr = new int[1];
-        int[] heightArr = new int[1];
-        glfwGetWindowSize(window, widthArr, heightArr);
+    // Created with the first rasterize, on the GL thread.
+    private Raster raster;
+    private RasterTexture screen;
 
-        int width = widthArr[0];
-        int height = heightArr[0];
+    // Draws one progressive pass of pixel, e.g. op(), returns whether more passes remain.
+    // Call again each frame until it returns false, panning keeps finished pixels.
+    private boolean rasterize(Raster.PixelFunction pixel) {
+        if (raster == null) {
+            raster = new Raster(window);
+        }
 
-        double widthScale = (width / 2.0) * stepSize;
-        double heightScale = (height / 2.0) * stepSize;
+        // Same size and step keep the pixels.
+        raster.resizePixels();
+        raster.stepSize(BigDecimal.valueOf(stepSize));
 
-        glScaled(1.0 / widthScale, 1.0 / heightScale, 1);
-        glTranslated(-x, -y, 0);
+        if (refresh) {
+            raster.invalidate();
+        }
 
-        double cornerX = x - widthScale;
-        double cornerY = y - heightScale;
+        if (raster.complete()) {
+            raster.pan(panX, panY, pixel);
+        } else {
+            raster.move(panX, panY);
+        }
 
-        glBegin(GL_POINTS);
+        boolean more = raster.refine(pixel);
 
-        for (double xc = 0; xc < width; xc++) {
-            for (double yc = 0; yc < height; yc++) {
-                double xp = cornerX + (stepSize * xc);
-                double yp = cornerY + (stepSize * yc);
+        panX = 0;
+        panY = 0;
+        refresh = false;
 
-                Item color = f.apply(vector2D(xp, yp));
-                glColor3d(color.val(0), color.val(1), color.val(2));
-                glVertex2d(xp, yp);
-            }
+        if (screen == null) {
+            // Pixel buffer objects are core from GL 2.1.
+            screen = new RasterTexture(GL.getCapabilities().OpenGL21);
         }
 
-        glEnd();
-        glPopMatrix();
+        screen.present(raster);
+
+        return more;
     }
 
 
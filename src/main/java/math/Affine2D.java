@@ -0,0 +1,214 @@
+package math;
+
+import static math.Util.*;
+
+/**
+ * Affine2D is a fixed size 2D affine transform.
+ *
+ * It holds the same values as the 3x3 Matrix...
+ * [a, b, 0]
+ * [c, d, 0]
+ * [e, f, 1]
+ *
+ * Like Matrix, this works on rows.
+ * If p is a 2D Item and T an Affine2D, pT represents the product.
+ * So, A.times(B) is the transform which applies A first, then B.
+ *
+ * Use this over a 3x3 Matrix when composing many transforms,
+ * no arrays are allocated and composition is closed form.
+ */
+public class Affine2D {
+    private static final Affine2D I = new Affine2D(1, 0, 0, 1, 0, 0);
+
+    public static Affine2D i() {
+        return I;
+    }
+
+    public static Affine2D of(double a, double b, double c, double d, double e, double f) {
+        return new Affine2D(a, b, c, d, e, f);
+    }
+
+    // Given Matrix must be 3x3 with last column [0, 0, 1].
+    public static Affine2D of(Matrix m) {
+        if (m.rows() != 3 || m.cols() != 3) {
+            throw new IllegalArgumentException("Affine2D requires a 3x3 Matrix!");
+        }
+
+        double[] data = m.data();
+
+        if (data[2] != 0 || data[5] != 0 || data[8] != 1) {
+            throw new IllegalArgumentException("Matrix is not a 2D affine transform!");
+        }
+
+        return new Affine2D(data[0], data[1], data[3], data[4], data[6], data[7]);
+    }
+
+    public static Affine2D shift(double x, double y) {
+        return new Affine2D(1, 0, 0, 1, x, y);
+    }
+
+    public static Affine2D rotation(double theta) {
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+
+        return new Affine2D(cos, sin, -sin, cos, 0, 0);
+    }
+
+    public static Affine2D scaling(double sh, double sv) {
+        return new Affine2D(sh, 0, 0, sv, 0, 0);
+    }
+
+    final double a, b, c, d, e, f;
+
+    Affine2D(double a, double b, double c, double d, double e, double f) {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+        this.e = e;
+        this.f = f;
+    }
+
+    public double val(int i) {
+        switch (i) {
+            case 0: return a;
+            case 1: return b;
+            case 2: return c;
+            case 3: return d;
+            case 4: return e;
+            case 5: return f;
+            default:
+                throw new IndexOutOfBoundsException("Affine2D only has 6 values!");
+        }
+    }
+
+    public Matrix asMatrix() {
+        return new Matrix(3, 3, new double[] {
+                a, b, 0,
+                c, d, 0,
+                e, f, 1
+        });
+    }
+
+    // Components of the image of the point (x, y).
+    public double x(double x, double y) {
+        return (x * a) + (y * c) + e;
+    }
+
+    public double y(double x, double y) {
+        return (x * b) + (y * d) + f;
+    }
+
+    // this first, then o.
+    public Affine2D times(Affine2D o) {
+        return new Affine2D(
+                (a * o.a) + (b * o.c),
+                (a * o.b) + (b * o.d),
+                (c * o.a) + (d * o.c),
+                (c * o.b) + (d * o.d),
+                (e * o.a) + (f * o.c) + o.e,
+                (e * o.b) + (f * o.d) + o.f
+        );
+    }
+
+    public double determinant() {
+        return (a * d) - (b * c);
+    }
+
+    // Spectral norm of the linear part, the most any length is stretched.
+    public double norm() {
+        double sq = (a * a) + (b * b) + (c * c) + (d * d);
+        double det = determinant();
+        double disc = Math.sqrt(Math.max((sq * sq) - (4 * det * det), 0));
+
+        return Math.sqrt((sq + disc) / 2);
+    }
+
+    // Same singularity test as Matrix.inverse, on the 3x3 forms.
+    public Affine2D inverse() {
+        double det = determinant();
+
+        double ia = d / det;
+        double ib = -b / det;
+        double ic = -c / det;
+        double id = a / det;
+
+        Affine2D inv = new Affine2D(
+                ia, ib,
+                ic, id,
+                -((e * ia) + (f * ic)),
+                -((e * ib) + (f * id))
+        );
+
+        if (det == 0 || Util.isSingular(norm1() * inv.norm1())) {
+            throw new ArithmeticException("Cannot invert a singular Affine2D!");
+        }
+
+        return inv;
+    }
+
+    // Max column sum of the 3x3 form, whose last column is (0, 0, 1).
+    private double norm1() {
+        return Math.max(Math.max(Math.abs(a) + Math.abs(c) + Math.abs(e), Math.abs(b) + Math.abs(d) + Math.abs(f)), 1);
+    }
+
+    public Affine2D shift2D(double x, double y) {
+        return new Affine2D(a, b, c, d, e + x, f + y);
+    }
+
+    public Affine2D rotate2D(double theta) {
+        return this.times(rotation(theta));
+    }
+
+    public Affine2D rotate2D(double x, double y, double theta) {
+        return this.shift2D(-x, -y).rotate2D(theta).shift2D(x, y);
+    }
+
+    public Affine2D scale2D(double s) {
+        return new Affine2D(a * s, b * s, c * s, d * s, e * s, f * s);
+    }
+
+    public Affine2D scale2D(double sh, double sv) {
+        return new Affine2D(a * sh, b * sv, c * sh, d * sv, e * sh, f * sv);
+    }
+
+    public Affine2D scale2D(double x, double y, double s) {
+        return this.shift2D(-x, -y).scale2D(s).shift2D(x, y);
+    }
+
+    public Affine2D scale2D(double px, double py, double vx, double vy, double s) {
+        double theta = Math.atan(vy / vx);
+
+        return this.shift2D(-px, -py)
+                .rotate2D(-theta)
+                .scale2D(s, 1)
+                .rotate2D(theta)
+                .shift2D(px, py);
+    }
+
+    public Affine2D affineTrans2D(double a, double b, double c, double d, double e, double f) {
+        return this.times(new Affine2D(a, b, c, d, e, f));
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof Affine2D)) {
+            return false;
+        }
+
+        Affine2D t = (Affine2D) o;
+
+        return Math.abs(a - t.a) <= EPS && Math.abs(b - t.b) <= EPS &&
+                Math.abs(c - t.c) <= EPS && Math.abs(d - t.d) <= EPS &&
+                Math.abs(e - t.e) <= EPS && Math.abs(f - t.f) <= EPS;
+    }
+
+    // Equality is within EPS, so no field can go in the hash.
+    @Override
+    public int hashCode() {
+        return 0;
+    }
+
+    public String toString() {
+        return "[[" + a + ", " + b + ", 0.0], [" + c + ", " + d + ", 0.0], [" + e + ", " + f + ", 1.0]]";
+    }
+}
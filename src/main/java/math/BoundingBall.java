@@ -0,0 +1,124 @@
+package math;
+
+import static math.Util.*;
+
+/**
+ * BoundingBall is a disc holding the attractor of an IFS, and optionally a seed.
+ *
+ * For a center c and maps M_j with contraction s_j = M_j.norm() < 1,
+ * the disc of radius r >= |c M_j - c| / (1 - s_j) for every j is mapped into itself by each map,
+ * so it holds the attractor. If it also holds the seed, it holds every level of the expansion,
+ * and the image of the disc under a composite map holds everything below that branch.
+ *
+ * An IFS with a map that does not contract gets an infinite radius.
+ */
+public final class BoundingBall {
+    // The attractor alone.
+    public static BoundingBall of(IFS ifs) {
+        return of(Expander.transforms(ifs), null);
+    }
+
+    // The attractor and all expansions of seed.
+    public static BoundingBall of(IFS ifs, Matrix seed) {
+        if (seed.cols() != 3) {
+            throw new IllegalArgumentException("BoundingBall requires 2D points!");
+        }
+
+        return of(Expander.transforms(ifs), seed);
+    }
+
+    static BoundingBall of(Affine2D[] ts, Matrix seed) {
+        if (ts.length == 0) {
+            throw new RuntimeException("Empty IFS has no attractor!");
+        }
+
+        // Center on the mean of the fixed points, which are on the attractor.
+        double cx = 0;
+        double cy = 0;
+
+        for (Affine2D t : ts) {
+            double det = ((1 - t.a) * (1 - t.d)) - (t.b * t.c);
+
+            if (Math.abs(det) <= EPS) {
+                return new BoundingBall(0, 0, Double.POSITIVE_INFINITY);
+            }
+
+            cx += (((t.e * (1 - t.d)) + (t.f * t.c)) / det) / ts.length;
+            cy += (((t.f * (1 - t.a)) + (t.e * t.b)) / det) / ts.length;
+        }
+
+        double r = 0;
+
+        for (Affine2D t : ts) {
+            double s = t.norm();
+
+            if (s >= 1) {
+                return new BoundingBall(cx, cy, Double.POSITIVE_INFINITY);
+            }
+
+            r = Math.max(r, Math.hypot(t.x(cx, cy) - cx, t.y(cx, cy) - cy) / (1 - s));
+        }
+
+        if (seed != null) {
+            double[] d = seed.data();
+
+            for (int i = 0; i < d.length; i += 3) {
+                r = Math.max(r, Math.hypot(d[i] - cx, d[i + 1] - cy));
+            }
+        }
+
+        return new BoundingBall(cx, cy, r);
+    }
+
+    private final double x;
+    private final double y;
+    private final double r;
+
+    private BoundingBall(double x, double y, double r) {
+        this.x = x;
+        this.y = y;
+        this.r = r;
+    }
+
+    public double x() {
+        return x;
+    }
+
+    public double y() {
+        return y;
+    }
+
+    public double radius() {
+        return r;
+    }
+
+    public boolean isBounded() {
+        return r < Double.POSITIVE_INFINITY;
+    }
+
+    // A disc holding the image of this one under t.
+    public BoundingBall times(Affine2D t) {
+        return new BoundingBall(t.x(x, y), t.y(x, y), isBounded() ? r * t.norm() : r);
+    }
+
+    public boolean contains(double px, double py) {
+        return Math.hypot(px - x, py - y) <= r + EPS;
+    }
+
+    // True if the disc meets the box [minX, maxX] x [minY, maxY].
+    public boolean intersects(double minX, double minY, double maxX, double maxY) {
+        return intersects(x, y, r, minX, minY, maxX, maxY);
+    }
+
+    static boolean intersects(double x, double y, double r, double minX, double minY, double maxX, double maxY) {
+        double dx = x - Math.max(minX, Math.min(x, maxX));
+        double dy = y - Math.max(minY, Math.min(y, maxY));
+
+        return (dx * dx) + (dy * dy) <= r * r;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBall(" + x + ", " + y + ", " + r + ")";
+    }
+}
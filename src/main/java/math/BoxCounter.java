@@ -0,0 +1,308 @@
+package math;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * BoxCounter estimates the box counting dimension of a point set.
+ *
+ * Points are marked in a bitset grid of 2^levels cells per side over a square domain.
+ * Grids for coarser levels are derived from it at the end by OR-ing 2x2 blocks,
+ * so any number of points costs one bit per finest cell, and one bit set per point.
+ *
+ * The dimension is the slope of log2 N(level) against level, fit by least squares,
+ * where N(level) is the number of occupied cells at 2^level cells per side.
+ *
+ * A BoxCounter is a ChaosGame.PointSink, so points can be streamed straight into it.
+ * It is not thread safe, give each thread its own and merge them (see addParallel).
+ */
+public class BoxCounter implements ChaosGame.PointSink {
+    // 2^14 x 2^14 bits is 32MB.
+    public static final int MAX_LEVELS = 14;
+
+    // Square holding ball.
+    public static BoxCounter of(BoundingBall ball, int levels) {
+        if (!ball.isBounded()) {
+            throw new IllegalArgumentException("BoxCounter requires a bounded domain!");
+        }
+
+        return new BoxCounter(ball.x() - ball.radius(), ball.y() - ball.radius(), 2 * ball.radius(), levels);
+    }
+
+    private final double minX;
+    private final double minY;
+    private final double size;
+    private final int levels;
+
+    private final int side;
+    private final double scale;
+    private final long[] bits;
+
+    private long points;
+    private long outside;
+
+    public BoxCounter(double minX, double minY, double size, int levels) {
+        if (!(size > 0) || Double.isInfinite(size)) {
+            throw new IllegalArgumentException("BoxCounter domain must have a positive size!");
+        }
+
+        if (levels < 0 || levels > MAX_LEVELS) {
+            throw new IllegalArgumentException("BoxCounter supports 0 to " + MAX_LEVELS + " levels!");
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.size = size;
+        this.levels = levels;
+
+        side = 1 << levels;
+        scale = side / size;
+        bits = new long[Math.max(1, (side * side) / 64)];
+    }
+
+    public int levels() {
+        return levels;
+    }
+
+    // Points seen, inside the domain or not.
+    public long points() {
+        return points;
+    }
+
+    public long outside() {
+        return outside;
+    }
+
+    @Override
+    public void accept(double x, double y) {
+        points++;
+
+        double fx = (x - minX) * scale;
+        double fy = (y - minY) * scale;
+
+        // Points on the far edge belong to the last cell.
+        if (!(fx >= 0 && fx <= side && fy >= 0 && fy <= side)) {
+            outside++;
+            return;
+        }
+
+        int ix = Math.min((int) fx, side - 1);
+        int iy = Math.min((int) fy, side - 1);
+        int i = (iy * side) + ix;
+
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    // Every row of a point Matrix, e.g. an IFS expansion.
+    public void add(Matrix m) {
+        if (m.cols() != 3) {
+            throw new IllegalArgumentException("BoxCounter requires 2D points!");
+        }
+
+        double[] d = m.data();
+
+        for (int i = 0; i < d.length; i += 3) {
+            accept(d[i], d[i + 1]);
+        }
+    }
+
+    // Runs game into this, with one grid per part merged at the end.
+    public void addParallel(ChaosGame game, long points, long seed, int parts, ForkJoinPool pool) {
+        BoxCounter[] grids = new BoxCounter[parts];
+        grids[0] = this;
+
+        for (int p = 1; p < parts; p++) {
+            grids[p] = new BoxCounter(minX, minY, size, levels);
+        }
+
+        game.runParallel(points, seed, parts, pool, p -> grids[p]);
+
+        for (int p = 1; p < parts; p++) {
+            merge(grids[p]);
+        }
+    }
+
+    // Adds the points of other, which must cover the same grid.
+    public void merge(BoxCounter other) {
+        if (other.minX != minX || other.minY != minY || other.size != size || other.levels != levels) {
+            throw new IllegalArgumentException("BoxCounter grids do not match!");
+        }
+
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+
+        points += other.points;
+        outside += other.outside;
+    }
+
+    // counts[level] is the number of occupied cells with 2^level cells per side.
+    public long[] counts() {
+        long[] counts = new long[levels + 1];
+
+        long[] grid = bits;
+        int s = side;
+
+        for (int level = levels; ; level--) {
+            counts[level] = count(grid, s);
+
+            if (level == 0) {
+                return counts;
+            }
+
+            grid = coarsen(grid, s);
+            s /= 2;
+        }
+    }
+
+    // Least squares fit of log2 N against levels [from, to].
+    public Fit fit(int from, int to) {
+        if (from < 0 || to > levels || to - from < 1) {
+            throw new IllegalArgumentException("Fit needs at least 2 levels in range!");
+        }
+
+        long[] counts = counts();
+
+        int n = (to - from) + 1;
+        double sx = 0, sy = 0, sxx = 0, sxy = 0, syy = 0;
+
+        for (int level = from; level <= to; level++) {
+            double y = counts[level] == 0 ? 0 : Math.log(counts[level]) / Math.log(2);
+
+            sx += level;
+            sy += y;
+            sxx += level * level;
+            sxy += level * y;
+            syy += y * y;
+        }
+
+        double slope = ((n * sxy) - (sx * sy)) / ((n * sxx) - (sx * sx));
+        double intercept = (sy - (slope * sx)) / n;
+
+        double ssTot = syy - ((sy * sy) / n);
+        double ssRes = 0;
+
+        for (int level = from; level <= to; level++) {
+            double y = counts[level] == 0 ? 0 : Math.log(counts[level]) / Math.log(2);
+            double r = y - (intercept + (slope * level));
+            ssRes += r * r;
+        }
+
+        double r2 = ssTot <= 0 ? 1 : 1 - (ssRes / ssTot);
+
+        return new Fit(slope, intercept, r2, counts);
+    }
+
+    public Fit fit() {
+        return fit(1, levels);
+    }
+
+    private static long count(long[] grid, int s) {
+        long n = 0;
+
+        if (s * s < 64) {
+            // Bits past s * s are never set.
+            return Long.bitCount(grid[0]);
+        }
+
+        for (long w : grid) {
+            n += Long.bitCount(w);
+        }
+
+        return n;
+    }
+
+    // OR of each 2x2 block of an s x s grid.
+    private static long[] coarsen(long[] grid, int s) {
+        int c = s / 2;
+        long[] out = new long[Math.max(1, (c * c) / 64)];
+
+        if (s < 128) {
+            // Rows are shorter than a word pair, go cell by cell.
+            for (int y = 0; y < c; y++) {
+                for (int x = 0; x < c; x++) {
+                    if (bit(grid, s, 2 * x, 2 * y) || bit(grid, s, (2 * x) + 1, 2 * y) ||
+                            bit(grid, s, 2 * x, (2 * y) + 1) || bit(grid, s, (2 * x) + 1, (2 * y) + 1)) {
+                        int i = (y * c) + x;
+                        out[i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+
+            return out;
+        }
+
+        int words = s / 64;
+
+        // Fine words 2j and 2j + 1 of a row pair make coarse word j.
+        for (int y = 0; y < c; y++) {
+            int r0 = 2 * y * words;
+            int r1 = r0 + words;
+            int o = y * (words / 2);
+
+            for (int j = 0; j < words / 2; j++) {
+                long lo = grid[r0 + (2 * j)] | grid[r1 + (2 * j)];
+                long hi = grid[r0 + (2 * j) + 1] | grid[r1 + (2 * j) + 1];
+
+                out[o + j] = pairs(lo) | (pairs(hi) << 32);
+            }
+        }
+
+        return out;
+    }
+
+    private static boolean bit(long[] grid, int s, int x, int y) {
+        int i = (y * s) + x;
+        return (grid[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // Bit i of the result is bit 2i | bit 2i + 1 of w.
+    private static long pairs(long w) {
+        w = (w | (w >>> 1)) & 0x5555555555555555L;
+        w = (w | (w >>> 1)) & 0x3333333333333333L;
+        w = (w | (w >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        w = (w | (w >>> 4)) & 0x00FF00FF00FF00FFL;
+        w = (w | (w >>> 8)) & 0x0000FFFF0000FFFFL;
+        w = (w | (w >>> 16)) & 0x00000000FFFFFFFFL;
+
+        return w;
+    }
+
+    /**
+     * Result of a fit, the dimension is the slope.
+     */
+    public static final class Fit {
+        private final double dimension;
+        private final double intercept;
+        private final double r2;
+        private final long[] counts;
+
+        private Fit(double dimension, double intercept, double r2, long[] counts) {
+            this.dimension = dimension;
+            this.intercept = intercept;
+            this.r2 = r2;
+            this.counts = counts;
+        }
+
+        public double dimension() {
+            return dimension;
+        }
+
+        public double intercept() {
+            return intercept;
+        }
+
+        // Coefficient of determination, 1 for a perfect line.
+        public double r2() {
+            return r2;
+        }
+
+        public long[] counts() {
+            return counts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("dimension %.4f (r2 %.4f)", dimension, r2);
+        }
+    }
+}
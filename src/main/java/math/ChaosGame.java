@@ -0,0 +1,238 @@
+package math;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+import static math.Util.*;
+
+/**
+ * ChaosGame draws the attractor of an IFS by random iteration.
+ *
+ * Starting on the attractor, each step applies one map picked at random, so every point lands on it too.
+ * N points cost O(N) time and no geometry memory, against k^depth for IFS.iterate.
+ *
+ * Maps are picked with Walker's alias method, O(1) per pick for any weights.
+ * Weights default to |determinant|, i.e. the share of area each map covers.
+ *
+ * Runs are reproducible from a seed. runParallel splits the points into parts,
+ * each with its own generator split off the seed, so results depend on the part count,
+ * never on the pool.
+ */
+public class ChaosGame {
+    /**
+     * Receives points. Called from one thread at a time per instance.
+     */
+    public interface PointSink {
+        void accept(double x, double y);
+    }
+
+    // Steps dropped at the start, if the start is not known to be on the attractor.
+    private static final int BURN_IN = 64;
+
+    // Uses the IFS weights if it has them (see IFS.weighted).
+    // Otherwise weights default to |det|, maps with no area get EPS so they are still drawn.
+    public static ChaosGame of(IFS ifs) {
+        double[] weights = ifs.weights();
+
+        if (weights == null) {
+            weights = new double[ifs.size()];
+
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = Math.max(Math.abs(ifs.determinant(i)), EPS);
+            }
+        }
+
+        return of(ifs, weights);
+    }
+
+    public static ChaosGame of(IFS ifs, double... weights) {
+        return new ChaosGame(Expander.transforms(ifs), weights);
+    }
+
+    private final Affine2D[] ts;
+
+    // Alias table, pick i with chance prob[i], otherwise alias[i].
+    private final double[] prob;
+    private final int[] alias;
+
+    // Start point, and how many steps to drop from it.
+    private final double startX;
+    private final double startY;
+    private final int burnIn;
+
+    private ChaosGame(Affine2D[] ts, double[] weights) {
+        if (ts.length == 0) {
+            throw new RuntimeException("Empty IFS cannot be applied!");
+        }
+
+        if (weights.length != ts.length) {
+            throw new IllegalArgumentException("Need one weight per map!");
+        }
+
+        this.ts = ts;
+
+        int k = ts.length;
+        double sum = 0;
+
+        for (double w : weights) {
+            if (!(w >= 0) || Double.isInfinite(w)) {
+                throw new IllegalArgumentException("Weights must be finite and non-negative!");
+            }
+
+            sum += w;
+        }
+
+        if (sum == 0) {
+            throw new IllegalArgumentException("Weights cannot all be 0!");
+        }
+
+        // Vose's construction, scaled so the average is 1.
+        prob = new double[k];
+        alias = new int[k];
+
+        double[] scaled = new double[k];
+        int[] small = new int[k];
+        int[] large = new int[k];
+        int ns = 0, nl = 0;
+
+        for (int i = 0; i < k; i++) {
+            scaled[i] = (weights[i] * k) / sum;
+
+            if (scaled[i] < 1) {
+                small[ns++] = i;
+            } else {
+                large[nl++] = i;
+            }
+        }
+
+        while (ns > 0 && nl > 0) {
+            int s = small[--ns];
+            int l = large[--nl];
+
+            prob[s] = scaled[s];
+            alias[s] = l;
+
+            scaled[l] = (scaled[l] + scaled[s]) - 1;
+
+            if (scaled[l] < 1) {
+                small[ns++] = l;
+            } else {
+                large[nl++] = l;
+            }
+        }
+
+        // Left overs are 1 up to rounding.
+        while (nl > 0) {
+            int l = large[--nl];
+            prob[l] = 1;
+            alias[l] = l;
+        }
+
+        while (ns > 0) {
+            int s = small[--ns];
+            prob[s] = 1;
+            alias[s] = s;
+        }
+
+        // The fixed point of a picked map is on the attractor, solve p = p * M.
+        int first = 0;
+        while (weights[first] == 0) {
+            first++;
+        }
+
+        Affine2D t = ts[first];
+        double det = ((1 - t.a) * (1 - t.d)) - (t.b * t.c);
+
+        if (Math.abs(det) > EPS) {
+            startX = ((t.e * (1 - t.d)) + (t.f * t.c)) / det;
+            startY = ((t.f * (1 - t.a)) + (t.e * t.b)) / det;
+            burnIn = 0;
+        } else {
+            startX = 0;
+            startY = 0;
+            burnIn = BURN_IN;
+        }
+    }
+
+    public int maps() {
+        return ts.length;
+    }
+
+    // Streams points onto sink, all from one generator.
+    public void run(long points, long seed, PointSink sink) {
+        run(points, new SplittableRandom(seed), sink);
+    }
+
+    // Streams points split into parts, part p going to sinks.apply(p).
+    // The same seed and parts give the same points per part, whatever the pool.
+    public void runParallel(long points, long seed, int parts, ForkJoinPool pool, IntFunction<PointSink> sinks) {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("Need at least one part!");
+        }
+
+        SplittableRandom root = new SplittableRandom(seed);
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[parts];
+
+        for (int p = 0; p < parts; p++) {
+            long count = (points / parts) + (p < points % parts ? 1 : 0);
+            SplittableRandom random = root.split();
+            PointSink sink = sinks.apply(p);
+
+            tasks[p] = pool.submit(() -> run(count, random, sink));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    // Points as rows of a Matrix, [x, y, 1].
+    public Matrix points(int points, long seed) {
+        if (points < 0 || (long) points * 3 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Point count out of range!");
+        }
+
+        double[] data = new double[points * 3];
+        int[] n = new int[1];
+
+        run(points, seed, (x, y) -> {
+            int o = n[0]++ * 3;
+
+            data[o] = x;
+            data[o + 1] = y;
+            data[o + 2] = 1;
+        });
+
+        return new Matrix(points, 3, data);
+    }
+
+    // Index of a random map, with chance proportional to its weight.
+    int pick(SplittableRandom random) {
+        double u = random.nextDouble() * prob.length;
+        int i = Math.min((int) u, prob.length - 1);
+
+        return (u - i) < prob[i] ? i : alias[i];
+    }
+
+    private void run(long points, SplittableRandom random, PointSink sink) {
+        double x = startX;
+        double y = startY;
+
+        for (long n = -burnIn; n < points; n++) {
+            Affine2D t = ts[pick(random)];
+
+            double nx = (x * t.a) + (y * t.c) + t.e;
+            double ny = (x * t.b) + (y * t.d) + t.f;
+
+            x = nx;
+            y = ny;
+
+            if (n >= 0) {
+                sink.accept(x, y);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package math;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy version of IFS.iterate, handing out the expansion in chunks of rows.
+ *
+ * The expansion at depth n is k^n blocks, block j_n * k^(n - 1) + ... + j_1 being
+ * the seed under the composite M_j1, then M_j2, ..., then M_jn (see Expander.expandFloat).
+ * Blocks are walked in order, with composites kept on a stack of depth + 1 maps,
+ * so only the digits that changed are recomposed. Memory is O(depth + chunk)
+ * whatever the size of the expansion.
+ *
+ * Each chunk is a new Matrix of whole blocks, so a segment never straddles two chunks.
+ * Composites are formed in double, so rows match iterate within EPS, not bit for bit.
+ *
+ * Splits hand off a prefix of the remaining chunks, so parallel streams keep order.
+ */
+final class ChunkSpliterator implements Spliterator<Matrix> {
+    private final Affine2D[] ts;
+    private final int depth;
+    private final double[] seed;
+    private final int seedRows;
+    private final int blocksPerChunk;
+
+    // Blocks [next, end) are left.
+    private long next;
+    private final long end;
+
+    // stack[t] is the composite of the maps chosen at digits t + 1 ... depth of block next - 1.
+    // Digits above valid are stale, valid == -1 means none are.
+    private final Affine2D[] stack;
+    private final int[] digits;
+    private int valid;
+
+    ChunkSpliterator(Affine2D[] ts, int depth, Matrix seed, int chunkRows) {
+        this(ts, depth, seed.data(), seed.rows(), Math.max(1, chunkRows / Math.max(seed.rows(), 1)),
+                0, blocks(ts.length, depth));
+
+        if (seed.cols() != 3) {
+            throw new IllegalArgumentException("IFS expansion requires 3 columns!");
+        }
+
+        if (ts.length == 0) {
+            throw new RuntimeException("Empty IFS cannot be applied!");
+        }
+
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive!");
+        }
+
+        if ((long) blocksPerChunk * seedRows * 3 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk is too large!");
+        }
+    }
+
+    // maps^depth, as long as it fits a long. Streams are not bound by array sizes.
+    private static long blocks(int maps, int depth) {
+        long blocks = 1;
+
+        try {
+            for (int i = 0; i < depth; i++) {
+                blocks = Math.multiplyExact(blocks, maps);
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Expansion is too large!");
+        }
+
+        return blocks;
+    }
+
+    private ChunkSpliterator(Affine2D[] ts, int depth, double[] seed, int seedRows, int blocksPerChunk,
+                             long next, long end) {
+        this.ts = ts;
+        this.depth = depth;
+        this.seed = seed;
+        this.seedRows = seedRows;
+        this.blocksPerChunk = blocksPerChunk;
+        this.next = next;
+        this.end = end;
+
+        stack = new Affine2D[depth + 1];
+        digits = new int[depth + 1];
+        stack[depth] = Affine2D.i();
+        valid = -1;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Matrix> action) {
+        if (next >= end) {
+            return false;
+        }
+
+        int blocks = (int) Math.min(blocksPerChunk, end - next);
+        double[] out = new double[blocks * seedRows * 3];
+
+        for (int b = 0; b < blocks; b++) {
+            PointKernel.transform(seed, 0, out, b * seedRows * 3, seedRows, advance());
+        }
+
+        action.accept(new Matrix(blocks * seedRows, 3, out));
+
+        return true;
+    }
+
+    // Composite of block next, then moves past it.
+    private Affine2D advance() {
+        int t;
+
+        if (valid < 0) {
+            // Fresh start, or just split, all digits from scratch.
+            long block = next;
+            for (int u = 1; u <= depth; u++) {
+                digits[u] = (int) (block % ts.length);
+                block /= ts.length;
+            }
+
+            t = depth;
+        } else {
+            // Digits below the lowest one which changed need new composites.
+            t = 1;
+            while (digits[t] == ts.length - 1) {
+                digits[t] = 0;
+                t++;
+            }
+            digits[t]++;
+        }
+
+        for (int u = t; u >= 1; u--) {
+            stack[u - 1] = ts[digits[u]].times(stack[u]);
+        }
+
+        valid = 0;
+        next++;
+
+        return stack[0];
+    }
+
+    @Override
+    public Spliterator<Matrix> trySplit() {
+        long chunks = estimateSize();
+
+        if (chunks < 2) {
+            return null;
+        }
+
+        // Split on a chunk boundary so sizes stay exact.
+        long mid = next + ((chunks / 2) * blocksPerChunk);
+        ChunkSpliterator prefix = new ChunkSpliterator(ts, depth, seed, seedRows, blocksPerChunk, next, mid);
+
+        next = mid;
+        valid = -1;
+
+        return prefix;
+    }
+
+    // Chunks left.
+    @Override
+    public long estimateSize() {
+        return next >= end ? 0 : ((end - next - 1) / blocksPerChunk) + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
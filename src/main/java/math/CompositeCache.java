@@ -0,0 +1,231 @@
+package math;
+
+import java.nio.DoubleBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CompositeCache keeps the k^d composite maps of an IFS at depth d,
+ * so expanding any seed is one batch transform per composite instead of d levels.
+ *
+ * Composite j_d * k^(d - 1) + ... + j_1 is M_j1, then M_j2, ..., then M_jd,
+ * the same block order as IFS.iterate. Level d + 1 comes from level d with one product per composite,
+ * C_{d + 1}[j * k^d + i] = C_d[i].times(M_j), starting from the deepest level already cached.
+ *
+ * Entries are keyed by IFS identity and depth, so keep the IFS around to get hits.
+ * Composites are stored flat, 6 doubles each. When the total would pass the byte cap,
+ * least recently used entries are evicted. An entry over the cap on its own is never kept.
+ *
+ * Results match IFS.iterate within EPS, composing first rounds differently.
+ */
+public class CompositeCache {
+    private static final int VALUES = 6;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, double[]> entries = new LinkedHashMap<>(16, .75f, true);
+
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public CompositeCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative!");
+        }
+
+        this.maxBytes = maxBytes;
+    }
+
+    // Same rows as ifs.iterate(depth, seed).
+    public Matrix iterate(IFS ifs, int depth, Matrix seed) {
+        double[] cs = composites(ifs, depth, seed);
+        double[] s = seed.data();
+        int rows = seed.rows();
+
+        double[] out = new double[(cs.length / VALUES) * rows * 3];
+
+        for (int i = 0, o = 0; i < cs.length; i += VALUES, o += rows * 3) {
+            PointKernel.transform(s, 0, out, o, rows, composite(cs, i));
+        }
+
+        return new Matrix(out.length / 3, 3, out);
+    }
+
+    // Same rows as ifs.iterate(depth, seed, pool). The caller must close the result.
+    public PointBuffer iterate(IFS ifs, int depth, Matrix seed, PointBuffer.Pool pool) {
+        double[] cs = composites(ifs, depth, seed);
+        DoubleBuffer s = DoubleBuffer.wrap(seed.data());
+        int rows = seed.rows();
+
+        PointBuffer out = pool.acquire((cs.length / VALUES) * rows);
+
+        try {
+            DoubleBuffer dst = out.raw();
+
+            for (int i = 0, o = 0; i < cs.length; i += VALUES, o += rows * 3) {
+                PointKernel.transform(s, 0, dst, o, rows, composite(cs, i));
+            }
+        } catch (RuntimeException e) {
+            out.close();
+            throw e;
+        }
+
+        return out;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    // Bytes of composites held.
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private double[] composites(IFS ifs, int depth, Matrix seed) {
+        if (seed.cols() != 3) {
+            throw new IllegalArgumentException("IFS expansion requires 3 columns!");
+        }
+
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth cannot be negative!");
+        }
+
+        double[] cs = composites(ifs, depth);
+
+        if ((cs.length / VALUES) * (long) seed.rows() * 3 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Expansion is too large!");
+        }
+
+        return cs;
+    }
+
+    // Flat a, b, c, d, e, f per composite, see Affine2D.
+    synchronized double[] composites(IFS ifs, int depth) {
+        double[] cs = entries.get(new Key(ifs, depth));
+
+        if (cs != null) {
+            hits++;
+            return cs;
+        }
+
+        misses++;
+
+        Affine2D[] ts = Expander.transforms(ifs);
+
+        if (ts.length == 0) {
+            throw new RuntimeException("Empty IFS cannot be applied!");
+        }
+
+        Expander.rows(VALUES, ts.length, depth);
+
+        // Start from the deepest shallower level on hand.
+        int d = depth - 1;
+        double[] cur = null;
+
+        while (d > 0 && (cur = entries.get(new Key(ifs, d))) == null) {
+            d--;
+        }
+
+        if (cur == null) {
+            d = 0;
+            cur = new double[] {1, 0, 0, 1, 0, 0};
+        }
+
+        for (; d < depth; d++) {
+            cur = next(cur, ts);
+        }
+
+        put(new Key(ifs, depth), cur);
+
+        return cur;
+    }
+
+    // C_{d + 1}[j * n + i] = C_d[i].times(M_j), with n = C_d.length.
+    private static double[] next(double[] cur, Affine2D[] ts) {
+        double[] next = new double[cur.length * ts.length];
+
+        for (int j = 0, o = 0; j < ts.length; j++) {
+            Affine2D m = ts[j];
+
+            for (int i = 0; i < cur.length; i += VALUES, o += VALUES) {
+                double a = cur[i], b = cur[i + 1], c = cur[i + 2];
+                double d = cur[i + 3], e = cur[i + 4], f = cur[i + 5];
+
+                next[o] = (a * m.a) + (b * m.c);
+                next[o + 1] = (a * m.b) + (b * m.d);
+                next[o + 2] = (c * m.a) + (d * m.c);
+                next[o + 3] = (c * m.b) + (d * m.d);
+                next[o + 4] = (e * m.a) + (f * m.c) + m.e;
+                next[o + 5] = (e * m.b) + (f * m.d) + m.f;
+            }
+        }
+
+        return next;
+    }
+
+    private static Affine2D composite(double[] cs, int i) {
+        return Affine2D.of(cs[i], cs[i + 1], cs[i + 2], cs[i + 3], cs[i + 4], cs[i + 5]);
+    }
+
+    private void put(Key key, double[] cs) {
+        long size = (long) cs.length * Double.BYTES;
+
+        if (size > maxBytes) {
+            return;
+        }
+
+        entries.put(key, cs);
+        bytes += size;
+
+        Iterator<Map.Entry<Key, double[]>> it = entries.entrySet().iterator();
+
+        while (bytes > maxBytes) {
+            Map.Entry<Key, double[]> eldest = it.next();
+
+            bytes -= (long) eldest.getValue().length * Double.BYTES;
+            it.remove();
+        }
+    }
+
+    // IFS by identity, not by value.
+    private static class Key {
+        private final IFS ifs;
+        private final int depth;
+
+        private Key(IFS ifs, int depth) {
+            this.ifs = ifs;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key k = (Key) o;
+
+            return ifs == k.ifs && depth == k.depth;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * System.identityHashCode(ifs)) + depth;
+        }
+    }
+}
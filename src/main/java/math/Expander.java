@@ -0,0 +1,302 @@
+package math;
+
+import java.nio.DoubleBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static math.Util.*;
+
+/**
+ * Expansion engines behind IFS.iterate.
+ *
+ * Level d + 1 of an expansion is the image of level d under each map, in map order.
+ * So for k maps and a seed with r rows, level d has r * k^d rows.
+ */
+final class Expander {
+    private Expander() {
+
+    }
+
+    // O(1) for the array backed IFS.
+    static Matrix[] maps(IFS ifs) {
+        if (ifs instanceof IFS.Indexed) {
+            return ((IFS.Indexed) ifs).maps();
+        }
+
+        Matrix[] ms = new Matrix[ifs.size()];
+
+        for (int i = 0; i < ms.length; i++) {
+            ms[i] = ifs.get(i);
+        }
+
+        return ms;
+    }
+
+    static Affine2D[] transforms(IFS ifs) {
+        Matrix[] ms = maps(ifs);
+        Affine2D[] ts = new Affine2D[ms.length];
+
+        for (int i = 0; i < ms.length; i++) {
+            ts[i] = Affine2D.of(ms[i]);
+        }
+
+        return ts;
+    }
+
+    static long rows(int seedRows, int maps, int depth) {
+        long rows = seedRows;
+
+        for (int i = 0; i < depth; i++) {
+            rows *= maps;
+
+            if (rows > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Expansion is too large!");
+            }
+        }
+
+        return rows;
+    }
+
+    // The depth level expansion of seed, i.e. IFS.iterate.
+    // The result is allocated once at its final size. Levels alternate between it
+    // and one scratch array 1/k its size, so the last level lands in the result.
+    //
+    // Levels with at least 2 * PointKernel.PARALLEL_THRESHOLD rows are split across pool
+    // (see LevelTask). Every row is computed by the same operations as sequentially,
+    // into its own slot, so the result does not depend on the pool.
+    static Matrix expand(Matrix[] ms, int depth, Matrix seed, ForkJoinPool pool) {
+        if (depth <= 0) {
+            return seed;
+        }
+
+        if (ms.length == 0) {
+            throw new RuntimeException("Empty IFS cannot be applied!");
+        }
+
+        int cols = seed.cols();
+
+        for (Matrix m : ms) {
+            if (m.rows() != cols || m.cols() != cols) {
+                throw new IllegalArgumentException("Bad dimensions for multiplication.");
+            }
+        }
+
+        // Affine maps take the point kernel.
+        Affine2D[] ts = new Affine2D[ms.length];
+
+        if (cols == 3) {
+            for (int i = 0; i < ms.length; i++) {
+                double[] d = ms[i].data();
+
+                if (d[2] == 0 && d[5] == 0 && d[8] == 1) {
+                    ts[i] = Affine2D.of(ms[i]);
+                }
+            }
+        }
+
+        int k = ms.length;
+        int total = (int) rows(seed.rows(), k, depth);
+
+        if ((long) total * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Expansion is too large!");
+        }
+
+        double[] out = new double[total * cols];
+        double[] scratch = depth == 1 ? null : new double[(total / k) * cols];
+
+        // Level 0 is read straight from the seed.
+        double[] cur = seed.data();
+        int rows = seed.rows();
+
+        for (int d = 1; d <= depth; d++) {
+            double[] next = (depth - d) % 2 == 0 ? out : scratch;
+
+            LevelTask level = new LevelTask(ms, ts, cols, cur, next, rows, 0, rows * k);
+
+            if (rows * k < PointKernel.PARALLEL_THRESHOLD * 2) {
+                level.compute();
+            } else {
+                pool.invoke(level);
+            }
+
+            rows *= k;
+            cur = next;
+        }
+
+        return new Matrix(total, cols, out);
+    }
+
+    /**
+     * Computes rows [lo, hi) of the next level.
+     * Row r of the next level is row (r % rows) of the current level under map (r / rows).
+     */
+    @SuppressWarnings("serial")
+    private static class LevelTask extends RecursiveAction {
+        private final Matrix[] ms;
+        private final Affine2D[] ts;
+        private final int cols;
+
+        private final double[] cur;
+        private final double[] next;
+        private final int rows;
+
+        private final int lo;
+        private final int hi;
+
+        private LevelTask(Matrix[] ms, Affine2D[] ts, int cols, double[] cur, double[] next, int rows,
+                          int lo, int hi) {
+            this.ms = ms;
+            this.ts = ts;
+            this.cols = cols;
+            this.cur = cur;
+            this.next = next;
+            this.rows = rows;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo >= PointKernel.PARALLEL_THRESHOLD * 2) {
+                int mid = lo + ((hi - lo) / 2);
+
+                invokeAll(
+                        new LevelTask(ms, ts, cols, cur, next, rows, lo, mid),
+                        new LevelTask(ms, ts, cols, cur, next, rows, mid, hi)
+                );
+
+                return;
+            }
+
+            // Walk the map blocks this range overlaps.
+            for (int start = lo; start < hi; ) {
+                int map = start / rows;
+                int end = Math.min(hi, (map + 1) * rows);
+
+                int srcOff = (start - (map * rows)) * cols;
+                int dstOff = start * cols;
+                int count = end - start;
+
+                if (ts[map] != null) {
+                    PointKernel.transform(cur, srcOff, next, dstOff, count, ts[map]);
+                } else if (cols == 3) {
+                    PointKernel.transform(cur, srcOff, next, dstOff, count, ms[map].data());
+                } else {
+                    mult(cur, srcOff, count, cols, ms[map].data(), cols, next, dstOff);
+                }
+
+                start = end;
+            }
+        }
+    }
+
+    // Writes the depth level expansion of seed into a buffer from pool.
+    // Two buffers are used, levels alternate between them so the last one lands in the result.
+    static PointBuffer expand(Affine2D[] ts, int depth, Matrix seed, PointBuffer.Pool pool) {
+        if (seed.cols() != 3) {
+            throw new IllegalArgumentException("IFS expansion requires 3 columns!");
+        }
+
+        if (ts.length == 0) {
+            throw new RuntimeException("Empty IFS cannot be applied!");
+        }
+
+        int k = ts.length;
+        int total = (int) rows(seed.rows(), k, depth);
+
+        PointBuffer out = pool.acquire(total);
+        PointBuffer scratch = depth == 0 ? null : pool.acquire(total / k);
+
+        try {
+            // Level d lives in out when depth - d is even.
+            PointBuffer cur = depth % 2 == 0 ? out : scratch;
+            cur.put(0, seed);
+
+            int rows = seed.rows();
+
+            for (int d = 1; d <= depth; d++) {
+                PointBuffer next = (depth - d) % 2 == 0 ? out : scratch;
+
+                DoubleBuffer src = cur.raw();
+                DoubleBuffer dst = next.raw();
+
+                for (int i = 0; i < k; i++) {
+                    PointKernel.transform(src, 0, dst, i * rows * 3, rows, ts[i]);
+                }
+
+                rows *= k;
+                cur = next;
+            }
+        } catch (RuntimeException e) {
+            out.close();
+            throw e;
+        } finally {
+            if (scratch != null) {
+                scratch.close();
+            }
+        }
+
+        return out;
+    }
+
+    // Same rows as the depth level expansion of seed, rounded once to float.
+    // Each block is the seed times its composite map, composed in double on a stack.
+    // Row block j_n * k^(n - 1) + ... + j_1 is the seed under M_j1, then M_j2, ..., then M_jn.
+    static FloatMatrix expandFloat(Affine2D[] ts, int depth, Matrix seed) {
+        if (seed.cols() != 3) {
+            throw new IllegalArgumentException("IFS expansion requires 3 columns!");
+        }
+
+        if (ts.length == 0) {
+            throw new RuntimeException("Empty IFS cannot be applied!");
+        }
+
+        int k = ts.length;
+        int rows = seed.rows();
+        long blocks = rows(1, k, depth);
+
+        if (blocks * rows * 3 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Expansion is too large!");
+        }
+
+        double[] s = seed.data();
+        float[] out = new float[(int) (blocks * rows * 3)];
+
+        // stack[t] is the composite of the maps chosen at digits t + 1 ... depth.
+        Affine2D[] stack = new Affine2D[depth + 1];
+        int[] digits = new int[depth + 1];
+        stack[depth] = Affine2D.i();
+
+        for (long block = 0; block < blocks; block++) {
+            // Digits below the lowest one which changed need new composites.
+            int t = depth;
+            if (block > 0) {
+                t = 1;
+                while (digits[t] == k - 1) {
+                    digits[t] = 0;
+                    t++;
+                }
+                digits[t]++;
+            }
+
+            for (int u = t; u >= 1; u--) {
+                stack[u - 1] = ts[digits[u]].times(stack[u]);
+            }
+
+            Affine2D c = stack[0];
+            int o = (int) (block * rows * 3);
+
+            for (int i = 0; i < s.length; i += 3) {
+                double x = s[i];
+                double y = s[i + 1];
+                double w = s[i + 2];
+
+                out[o + i] = (float) ((x * c.a) + (y * c.c) + (w * c.e));
+                out[o + i + 1] = (float) ((x * c.b) + (y * c.d) + (w * c.f));
+                out[o + i + 2] = (float) w;
+            }
+        }
+
+        return new FloatMatrix((int) (blocks * rows), out);
+    }
+}
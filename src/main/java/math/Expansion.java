@@ -0,0 +1,210 @@
+package math;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Expansion is a view dependent version of IFS.iterate.
+ *
+ * Instead of one depth for the whole curve, each branch is subdivided until its seed image
+ * is smaller than tolerance pixels, then the coarse copy of the seed is emitted.
+ * The size of a branch is bounded by the norm of its composite map (see Affine2D.norm),
+ * taken through the viewport, times the extent of the seed.
+ *
+ * With tolerance 0, the rows are those of IFS.iterate(maxDepth, seed), in the same order.
+ *
+ * Given the viewport's size, branches off screen are culled. Each branch is bounded by the image
+ * of a BoundingBall of the IFS and seed, and dropped when that misses [0, width] x [0, height].
+ * Culling only ever drops rows which lie wholly off screen.
+ *
+ * Like Affine2D, settings are chained and each returns a new Expansion.
+ */
+public final class Expansion {
+    // Deepest a branch goes by default.
+    public static final int MAX_DEPTH = 16;
+
+    public static Expansion of(IFS ifs) {
+        Affine2D[] ts = Expander.transforms(ifs);
+
+        if (ts.length == 0) {
+            throw new RuntimeException("Empty IFS cannot be applied!");
+        }
+
+        return new Expansion(ts, Affine2D.i(), Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                1, MAX_DEPTH);
+    }
+
+    private final Affine2D[] ts;
+    private final Affine2D view;
+    private final double width;
+    private final double height;
+    private final double tolerance;
+    private final int maxDepth;
+
+    private Expansion(Affine2D[] ts, Affine2D view, double width, double height, double tolerance,
+                      int maxDepth) {
+        this.ts = ts;
+        this.view = view;
+        this.width = width;
+        this.height = height;
+        this.tolerance = tolerance;
+        this.maxDepth = maxDepth;
+    }
+
+    // Transform from curve coordinates to pixels, nothing is culled.
+    public Expansion viewport(Affine2D view) {
+        return new Expansion(ts, view, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, tolerance, maxDepth);
+    }
+
+    // Same, and branches outside [0, width] x [0, height] pixels are culled.
+    public Expansion viewport(Affine2D view, double width, double height) {
+        if (!(width >= 0) || !(height >= 0)) {
+            throw new IllegalArgumentException("Viewport size cannot be negative!");
+        }
+
+        return new Expansion(ts, view, width, height, tolerance, maxDepth);
+    }
+
+    // Branches no larger than this many pixels are not subdivided.
+    public Expansion tolerance(double pixels) {
+        if (!(pixels >= 0)) {
+            throw new IllegalArgumentException("Tolerance cannot be negative!");
+        }
+
+        return new Expansion(ts, view, width, height, pixels, maxDepth);
+    }
+
+    public Expansion maxDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth cannot be negative!");
+        }
+
+        return new Expansion(ts, view, width, height, tolerance, depth);
+    }
+
+    public Matrix expand(Matrix seed) {
+        Leaves leaves = leaves(seed);
+        double[] s = seed.data();
+        int rows = seed.rows();
+
+        double[] out = new double[leaves.size * rows * 3];
+
+        for (int i = 0; i < leaves.size; i++) {
+            PointKernel.transform(s, 0, out, i * rows * 3, rows, leaves.get(i));
+        }
+
+        return new Matrix(leaves.size * rows, 3, out);
+    }
+
+    // Same rows as expand, written into a buffer from pool. The caller must close the result.
+    public PointBuffer expand(Matrix seed, PointBuffer.Pool pool) {
+        Leaves leaves = leaves(seed);
+        DoubleBuffer s = DoubleBuffer.wrap(seed.data());
+        int rows = seed.rows();
+
+        PointBuffer out = pool.acquire(leaves.size * rows);
+
+        try {
+            DoubleBuffer dst = out.raw();
+
+            for (int i = 0; i < leaves.size; i++) {
+                PointKernel.transform(s, 0, dst, i * rows * 3, rows, leaves.get(i));
+            }
+        } catch (RuntimeException e) {
+            out.close();
+            throw e;
+        }
+
+        return out;
+    }
+
+    private Leaves leaves(Matrix seed) {
+        if (seed.cols() != 3) {
+            throw new IllegalArgumentException("IFS expansion requires 3 columns!");
+        }
+
+        // Culling needs a finite view and bound.
+        BoundingBall ball = null;
+
+        if (width < Double.POSITIVE_INFINITY || height < Double.POSITIVE_INFINITY) {
+            ball = BoundingBall.of(ts, seed);
+            ball = ball.isBounded() ? ball : null;
+        }
+
+        Leaves leaves = new Leaves(seed.rows());
+        walk(Affine2D.i(), 0, extent(seed), ball, leaves);
+
+        return leaves;
+    }
+
+    // Most any seed point is from the first one.
+    private static double extent(Matrix seed) {
+        double[] s = seed.data();
+        double max = 0;
+
+        for (int i = 3; i < s.length; i += 3) {
+            max = Math.max(max, Math.hypot(s[i] - s[0], s[i + 1] - s[1]));
+        }
+
+        return max;
+    }
+
+    // c is the composite of the maps chosen so far, the first one chosen applied last.
+    private void walk(Affine2D c, int depth, double extent, BoundingBall ball, Leaves leaves) {
+        Affine2D cv = c.times(view);
+        double norm = cv.norm();
+
+        if (ball != null) {
+            double x = cv.x(ball.x(), ball.y());
+            double y = cv.y(ball.x(), ball.y());
+
+            if (!BoundingBall.intersects(x, y, ball.radius() * norm, 0, 0, width, height)) {
+                return;
+            }
+        }
+
+        if (depth == maxDepth || norm * extent <= tolerance) {
+            leaves.add(c);
+            return;
+        }
+
+        for (Affine2D t : ts) {
+            walk(t.times(c), depth + 1, extent, ball, leaves);
+        }
+    }
+
+    // Growable flat list of leaf composites.
+    private static class Leaves {
+        private final int seedRows;
+        private double[] values = new double[6 * 64];
+        private int size;
+
+        private Leaves(int seedRows) {
+            this.seedRows = seedRows;
+        }
+
+        private void add(Affine2D c) {
+            if ((long) (size + 1) * seedRows * 3 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Expansion is too large!");
+            }
+
+            if (size * 6 == values.length) {
+                values = Arrays.copyOf(values, (int) Math.min((long) values.length * 2, Integer.MAX_VALUE - 8));
+            }
+
+            int o = size++ * 6;
+
+            values[o] = c.a;
+            values[o + 1] = c.b;
+            values[o + 2] = c.c;
+            values[o + 3] = c.d;
+            values[o + 4] = c.e;
+            values[o + 5] = c.f;
+        }
+
+        private Affine2D get(int i) {
+            int o = i * 6;
+            return Affine2D.of(values[o], values[o + 1], values[o + 2], values[o + 3], values[o + 4], values[o + 5]);
+        }
+    }
+}
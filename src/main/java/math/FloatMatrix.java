@@ -0,0 +1,149 @@
+package math;
+
+import static math.Util.*;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * FloatMatrix is a 3 column point Matrix stored in single precision.
+ * It takes half the memory and bandwidth of a Matrix, for large geometry headed to the screen.
+ *
+ * Only storage is single precision.
+ * Transforms are applied in double and rounded once on store,
+ * and IFS.iterateFloat composes maps in double (see Expander.expandFloat),
+ * so error does not build up with depth.
+ *
+ * equals compares within EPS, or within FLOAT_EPS relative for values too large
+ * for a float to resolve EPS (see Util.floatEquals).
+ */
+public class FloatMatrix {
+    private final int rows;
+    private final float[] data;
+
+    FloatMatrix(int rows, float[] data) {
+        this.rows = rows;
+        this.data = data;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    float[] data() {
+        return data;
+    }
+
+    public static FloatMatrix of(Matrix m) {
+        if (m.cols() != 3) {
+            throw new IllegalArgumentException("FloatMatrix requires 3 columns!");
+        }
+
+        double[] d = m.data();
+        float[] f = new float[d.length];
+
+        for (int i = 0; i < d.length; i++) {
+            f[i] = (float) d[i];
+        }
+
+        return new FloatMatrix(m.rows(), f);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public double val(int r, int c) {
+        return data[(r * 3) + c];
+    }
+
+    public Matrix toMatrix() {
+        double[] d = new double[data.length];
+
+        for (int i = 0; i < d.length; i++) {
+            d[i] = data[i];
+        }
+
+        return new Matrix(rows, 3, d);
+    }
+
+    public FloatMatrix times(Affine2D t) {
+        float[] newData = new float[data.length];
+
+        for (int i = 0; i < data.length; i += 3) {
+            double x = data[i];
+            double y = data[i + 1];
+            double w = data[i + 2];
+
+            newData[i] = (float) ((x * t.a) + (y * t.c) + (w * t.e));
+            newData[i + 1] = (float) ((x * t.b) + (y * t.d) + (w * t.f));
+            newData[i + 2] = (float) w;
+        }
+
+        return new FloatMatrix(rows, newData);
+    }
+
+    public FloatMatrix concat(FloatMatrix o) {
+        float[] newData = new float[data.length + o.data().length];
+
+        System.arraycopy(data, 0, newData, 0, data.length);
+        System.arraycopy(o.data(), 0, newData, data.length, o.data().length);
+
+        return new FloatMatrix(rows + o.rows(), newData);
+    }
+
+    // NOTE, for speed there is no 2D check.
+    public void draw2D() {
+        for (int i = 0; i < data.length; i += 3) {
+            glVertex2f(data[i], data[i + 1]);
+        }
+    }
+
+    // Whether m is this Matrix to float precision, see Util.floatEquals.
+    public boolean approxEquals(Matrix m) {
+        if (m.rows() != rows || m.cols() != 3) {
+            return false;
+        }
+
+        double[] oData = m.data();
+
+        for (int i = 0; i < data.length; i++) {
+            if (!floatEquals(data[i], oData[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FloatMatrix)) {
+            return false;
+        }
+
+        FloatMatrix m = (FloatMatrix) o;
+        float[] oData = m.data();
+
+        if (m.rows() != rows) {
+            return false;
+        }
+
+        for (int i = 0; i < data.length; i++) {
+            if (!floatEquals(data[i], oData[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Equality is within a tolerance, so only the shape can go in the hash.
+    @Override
+    public int hashCode() {
+        return rows;
+    }
+
+    public String toString() {
+        return toMatrix().toString();
+    }
+}
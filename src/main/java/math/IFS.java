@@ -1,19 +1,28 @@
 package math;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface IFS {
 
     static IFS ifs(Matrix... ms) {
-        IFS s = Empty.ONLY;
+        return Indexed.of(ms.clone(), null);
+    }
+
+    static IFS ifs(Affine2D... ts) {
+        Matrix[] ms = new Matrix[ts.length];
 
-        for (int i = ms.length - 1; i >= 0; i--) {
-            s = s.prepend(ms[i]);
+        for (int i = 0; i < ts.length; i++) {
+            ms[i] = ts[i].asMatrix();
         }
 
-        return s;
+        return Indexed.of(ms, null);
     }
 
     static IFS trianglePulse(double theta) {
@@ -22,12 +31,12 @@ public interface IFS {
         double pHeight = segLength * Math.cos(theta / 2.0);
 
         return ifs(
-                Matrix.i(3).scale2D(segLength),
-                Matrix.i(3).scale2D(segLength).rotate2D((Math.PI - theta) / 2.0)
+                Affine2D.i().scale2D(segLength),
+                Affine2D.i().scale2D(segLength).rotate2D((Math.PI - theta) / 2.0)
                         .shift2D(segLength, 0.0),
-                Matrix.i(3).scale2D(segLength).rotate2D((theta - Math.PI) / 2.0)
+                Affine2D.i().scale2D(segLength).rotate2D((theta - Math.PI) / 2.0)
                         .shift2D((segLength) + halfpWidth,pHeight),
-                Matrix.i(3).scale2D(segLength).shift2D((segLength) + (2.0 * halfpWidth), 0.0)
+                Affine2D.i().scale2D(segLength).shift2D((segLength) + (2.0 * halfpWidth), 0.0)
         );
     }
 
@@ -40,8 +49,8 @@ public interface IFS {
         double w = l * cosine;
         double h = l * sine;
 
-        Matrix one = Matrix.i(3).scale2D(l).rotate2D(Math.PI + phi).shift2D(w, h);
-        Matrix two = Matrix.i(3).scale2D(l).rotate2D(Math.PI - phi).shift2D(1.0, 0);
+        Affine2D one = Affine2D.i().scale2D(l).rotate2D(Math.PI + phi).shift2D(w, h);
+        Affine2D two = Affine2D.i().scale2D(l).rotate2D(Math.PI - phi).shift2D(1.0, 0);
 
         return ifs(one, two);
     }
@@ -52,112 +61,264 @@ public interface IFS {
         double h = l * Math.sin(Math.PI - theta);
 
         return ifs(
-                Matrix.i(3).scale2D(l),
-                Matrix.i(3).scale2D(l).rotate2D(Math.PI - theta).shift2D(l, 0),
-                Matrix.i(3).scale2D(l).shift2D(l + w, h),
-                Matrix.i(3).scale2D(l).rotate2D(theta - Math.PI).shift2D((2 * l) + w, h),
-                Matrix.i(3).scale2D(l).shift2D(2 * (l + w), 0)
+                Affine2D.i().scale2D(l),
+                Affine2D.i().scale2D(l).rotate2D(Math.PI - theta).shift2D(l, 0),
+                Affine2D.i().scale2D(l).shift2D(l + w, h),
+                Affine2D.i().scale2D(l).rotate2D(theta - Math.PI).shift2D((2 * l) + w, h),
+                Affine2D.i().scale2D(l).shift2D(2 * (l + w), 0)
         );
     }
 
     static IFS empty() {
-        return Empty.ONLY;
+        return Indexed.EMPTY;
     }
 
     Matrix first();
     IFS rest();
     boolean isEmpty();
 
+    int size();
+    Matrix get(int i);
+
+    // Chance of each map for random iteration, null unless given (see weighted).
+    double[] weights();
+
+    // Same maps, with one weight per map.
+    IFS weighted(double... weights);
+
+    // Spectral norm of the linear part of map i, NaN if it is not 2x2 or 2D affine.
+    double contraction(int i);
+    // NaN if map i is not square.
+    double determinant(int i);
+
     Matrix of(Matrix m);
     List<Matrix> ofList(Matrix m);
+    // Expands level by level into one array sized up front, see Expander.expand.
+    // Large levels are split across the common pool.
     default Matrix iterate(int amt, Matrix m) {
-        return amt <= 0 ? m : iterate(amt - 1, of(m));
+        return iterate(amt, m, ForkJoinPool.commonPool());
     }
 
-    IFS map(UnaryOperator<Matrix> mapper);
+    // Same rows as iterate(amt, m), large levels are split across the given pool.
+    // The result is the same whatever the pool's parallelism.
+    default Matrix iterate(int amt, Matrix m, ForkJoinPool pool) {
+        return Expander.expand(Expander.maps(this), amt, m, pool);
+    }
+
+    // Same rows as iterate, but written off heap into a buffer from pool.
+    // The caller must close the result.
+    default PointBuffer iterate(int amt, Matrix m, PointBuffer.Pool pool) {
+        return Expander.expand(Expander.transforms(this), Math.max(amt, 0), m, pool);
+    }
+
+    // Same rows as iterate within EPS, from the composite maps held in cache.
+    default Matrix iterate(int amt, Matrix m, CompositeCache cache) {
+        return cache.iterate(this, Math.max(amt, 0), m);
+    }
+
+    // Same rows as iterate, stored in single precision.
+    // Maps are composed in double, so each value is rounded to float only once.
+    default FloatMatrix iterateFloat(int amt, Matrix m) {
+        return Expander.expandFloat(Expander.transforms(this), Math.max(amt, 0), m);
+    }
 
-    default IFS prepend(Matrix f) {
-        return new Cons(f, this);
+    // The rows of iterate(amt, m), computed lazily in chunks of about chunkRows rows.
+    // Chunks hold whole copies of m, so at least one. See ChunkSpliterator.
+    default Spliterator<Matrix> spliterator(int amt, Matrix m, int chunkRows) {
+        return new ChunkSpliterator(Expander.transforms(this), Math.max(amt, 0), m, chunkRows);
     }
 
-    class Empty implements IFS {
-        private static final Empty ONLY = new Empty();
+    // Chunks of iterate(amt, m) in order, without ever holding the whole expansion.
+    default Stream<Matrix> stream(int amt, Matrix m, int chunkRows) {
+        return StreamSupport.stream(spliterator(amt, m, chunkRows), false);
+    }
 
-        private Empty() {
+    IFS map(UnaryOperator<Matrix> mapper);
 
+    // Unweighted, weights are per map and f has none.
+    IFS prepend(Matrix f);
+
+    /**
+     * Maps held in an array, so access is O(1) and traversal has no pointer chasing.
+     *
+     * Instances are immutable. rest() is a view sharing the array from the next map on,
+     * so first / rest loops are still O(1) per step. Determinants and contraction ratios
+     * are computed once, when a map is added.
+     */
+    final class Indexed implements IFS {
+        private static final Indexed EMPTY = new Indexed(new Matrix[0], null, new double[0], new double[0], 0);
+
+        // Takes ownership of ms and weights.
+        private static Indexed of(Matrix[] ms, double[] weights) {
+            double[] contractions = new double[ms.length];
+            double[] determinants = new double[ms.length];
+
+            for (int i = 0; i < ms.length; i++) {
+                contractions[i] = contraction(ms[i]);
+                determinants[i] = determinant(ms[i]);
+            }
+
+            return new Indexed(ms, weights, contractions, determinants, 0);
+        }
+
+        private static double contraction(Matrix m) {
+            double[] d = m.data();
+
+            if (m.rows() == 2 && m.cols() == 2) {
+                return Affine2D.of(d[0], d[1], d[2], d[3], 0, 0).norm();
+            }
+
+            if (m.rows() == 3 && m.cols() == 3 && d[2] == 0 && d[5] == 0 && d[8] == 1) {
+                return Affine2D.of(d[0], d[1], d[3], d[4], 0, 0).norm();
+            }
+
+            return Double.NaN;
+        }
+
+        // NaN if not square, the map cannot be applied anyway.
+        private static double determinant(Matrix m) {
+            return m.rows() == m.cols() ? m.determinant() : Double.NaN;
+        }
+
+        private final Matrix[] ms;
+        private final double[] weights;
+        private final double[] contractions;
+        private final double[] determinants;
+
+        // Maps [offset, ms.length) are this IFS.
+        private final int offset;
+
+        private Indexed(Matrix[] ms, double[] weights, double[] contractions, double[] determinants, int offset) {
+            this.ms = ms;
+            this.weights = weights;
+            this.contractions = contractions;
+            this.determinants = determinants;
+            this.offset = offset;
+        }
+
+        // The maps in order, for readers in this package. Do not modify.
+        Matrix[] maps() {
+            return offset == 0 ? ms : Arrays.copyOfRange(ms, offset, ms.length);
         }
 
         @Override
         public Matrix first() {
-            throw new RuntimeException("Empty IFS has no first element!");
+            if (isEmpty()) {
+                throw new RuntimeException("Empty IFS has no first element!");
+            }
+
+            return ms[offset];
         }
 
         @Override
         public IFS rest() {
-            throw new RuntimeException("Empty IFS has no rest!");
+            if (isEmpty()) {
+                throw new RuntimeException("Empty IFS has no rest!");
+            }
+
+            return new Indexed(ms, weights, contractions, determinants, offset + 1);
         }
 
         @Override
         public boolean isEmpty() {
-            return true;
+            return offset == ms.length;
         }
 
         @Override
-        public Matrix of(Matrix m) {
-            throw new RuntimeException("Empty IFS cannot be applied!");
+        public int size() {
+            return ms.length - offset;
         }
 
         @Override
-        public List<Matrix> ofList(Matrix m) {
-            return new ArrayList<>();
+        public Matrix get(int i) {
+            return ms[index(i)];
         }
 
         @Override
-        public IFS map(UnaryOperator<Matrix> mapper) {
-            return this;
+        public double[] weights() {
+            return weights == null ? null : Arrays.copyOfRange(weights, offset, ms.length);
         }
-    }
-
-    class Cons implements IFS {
-        private final Matrix first;
-        private final IFS rest;
 
-        private Cons(Matrix f, IFS r) {
-            first = f;
-            rest = r;
+        @Override
+        public IFS weighted(double... weights) {
+            if (weights.length != size()) {
+                throw new IllegalArgumentException("Need one weight per map!");
+            }
+
+            for (double w : weights) {
+                if (!(w >= 0) || Double.isInfinite(w)) {
+                    throw new IllegalArgumentException("Weights must be finite and non-negative!");
+                }
+            }
+
+            return new Indexed(maps(), weights.clone(),
+                    Arrays.copyOfRange(contractions, offset, ms.length),
+                    Arrays.copyOfRange(determinants, offset, ms.length), 0);
         }
 
         @Override
-        public Matrix first() {
-            return first;
+        public double contraction(int i) {
+            return contractions[index(i)];
         }
 
         @Override
-        public IFS rest() {
-            return rest;
+        public double determinant(int i) {
+            return determinants[index(i)];
         }
 
         @Override
-        public boolean isEmpty() {
-            return false;
+        public IFS prepend(Matrix f) {
+            int n = size();
+
+            Matrix[] nms = new Matrix[n + 1];
+            double[] ncs = new double[n + 1];
+            double[] nds = new double[n + 1];
+
+            nms[0] = f;
+            ncs[0] = contraction(f);
+            nds[0] = determinant(f);
+
+            System.arraycopy(ms, offset, nms, 1, n);
+            System.arraycopy(contractions, offset, ncs, 1, n);
+            System.arraycopy(determinants, offset, nds, 1, n);
+
+            return new Indexed(nms, null, ncs, nds, 0);
         }
 
         @Override
         public Matrix of(Matrix m) {
-            Matrix mp = m.times(first);
-            return rest.isEmpty() ? mp : mp.concat(rest.of(m));
+            return Expander.expand(maps(), 1, m, ForkJoinPool.commonPool());
         }
 
         @Override
         public List<Matrix> ofList(Matrix m) {
-            List<Matrix> results = rest.ofList(m);
-            results.add(m.times(first));
+            List<Matrix> results = new ArrayList<>(size());
+
+            // Images come back last map first.
+            for (int i = ms.length - 1; i >= offset; i--) {
+                results.add(m.times(ms[i]));
+            }
+
             return results;
         }
 
         @Override
         public IFS map(UnaryOperator<Matrix> mapper) {
-            return new Cons(mapper.apply(first), rest.map(mapper));
+            Matrix[] mapped = new Matrix[size()];
+
+            for (int i = 0; i < mapped.length; i++) {
+                mapped[i] = mapper.apply(ms[offset + i]);
+            }
+
+            return of(mapped, weights());
+        }
+
+        private int index(int i) {
+            if (i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException("IFS has no map " + i + "!");
+            }
+
+            return offset + i;
         }
     }
 }
@@ -42,7 +42,7 @@ public class Item {
     }
 
     public Matrix asMatrix() {
-        return new Matrix(new double[][] {vals});
+        return new Matrix(1, vals.length, vals.clone());
     }
 
     public boolean is2DPoint() {
@@ -63,7 +63,20 @@ public class Item {
     }
 
     public Item times(Matrix m) {
-        return new Item(mult(vals, m.mat()));
+        return new Item(mult(vals, m.data(), m.rows(), m.cols()));
+    }
+
+    // NOTE, this requires a 2D Item.
+    public Item times(Affine2D t) {
+        if (vals.length != 3) {
+            throw new IllegalArgumentException("Bad dimensions for multiplication.");
+        }
+
+        double x = vals[0];
+        double y = vals[1];
+        double w = vals[2];
+
+        return new Item((x * t.a) + (y * t.c) + (w * t.e), (x * t.b) + (y * t.d) + (w * t.f), w);
     }
 
     public Item times(double s) {
@@ -164,4 +177,11 @@ public class Item {
                 Math.abs(vals[j] - oVals[j]) > EPS);
 
     }
+
+    // Equality is within EPS, so the hash can only depend on
+    // what must match exactly, the dimension and Point vs Vector.
+    // For hashing by position, see the spatial hash in LineMesh.
+    public int hashCode() {
+        return (31 * vals.length) + (vals[vals.length - 1] == 0.0 ? 0 : 1);
+    }
 }
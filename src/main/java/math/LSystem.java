@@ -0,0 +1,666 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * LSystem is an axiom, rewriting rules, and a turtle operation per symbol.
+ *
+ * After depth rewrites, each symbol runs its operation, symbols without one are skipped.
+ * A symbol with a rule is only run as an operation once depth runs out,
+ * so "K -> <K+K-K+K>" with K forward draws like a recursive turtle procedure.
+ *
+ * Settings are compiled once to a Program of int symbol ids, with rotations stored as
+ * cos / sin constants. Running walks the rules with a stack of depth + 1 frames,
+ * so the rewritten string is never built. The turtle is 4 doubles, and PUSH / POP
+ * save it on a primitive stack.
+ *
+ * Arithmetic is the same as Turtle, so segments match a Turtle run of the same steps.
+ *
+ * Like Affine2D, settings are chained and each returns a new LSystem.
+ */
+public final class LSystem {
+    /**
+     * Receives segments in drawing order.
+     */
+    public interface SegmentSink {
+        void segment(double x0, double y0, double x1, double y1);
+    }
+
+    // Same curve as Runner.kco.
+    public static LSystem kco() {
+        return of("K")
+                .rule('K', "<K+K-K+K>")
+                .forward('K', 1)
+                .scale('<', 1.0 / 3.0)
+                .scale('>', 3.0)
+                .rotate('+', Math.PI / 3.0)
+                .rotate('-', - 2 * Math.PI / 3.0);
+    }
+
+    // Same curve as Runner.kcn.
+    public static LSystem kcn() {
+        return of("K")
+                .rule('K', "m-<K+K->m")
+                .forward('K', 1)
+                .move('m', 1.0)
+                .rotate('-', 5.0 * Math.PI / 6.0)
+                .rotate('+', Math.PI / 3.0)
+                .scale('<', 1.0 / Math.sqrt(3.0))
+                .scale('>', Math.sqrt(3.0));
+    }
+
+    public static LSystem of(String axiom) {
+        return new LSystem(axiom, new HashMap<>(), new HashMap<>());
+    }
+
+    // Segments below which a subtree is not split further.
+    // A segment costs a few multiplies, so this keeps tasks well over their scheduling cost.
+    static final int PARALLEL_SEGMENTS = 1 << 14;
+
+    static final int NONE = 0;
+    static final int FORWARD = 1;
+    static final int MOVE = 2;
+    static final int ROTATE = 3;
+    static final int SCALE = 4;
+    static final int PUSH = 5;
+    static final int POP = 6;
+
+    private final String axiom;
+    private final Map<Character, String> rules;
+    private final Map<Character, double[]> ops;    // {code, param}
+
+    private volatile Program program;
+
+    private LSystem(String axiom, Map<Character, String> rules, Map<Character, double[]> ops) {
+        this.axiom = axiom;
+        this.rules = rules;
+        this.ops = ops;
+    }
+
+    public LSystem rule(char symbol, String replacement) {
+        Map<Character, String> r = new HashMap<>(rules);
+        r.put(symbol, replacement);
+
+        return new LSystem(axiom, r, ops);
+    }
+
+    public LSystem forward(char symbol, double s) {
+        return op(symbol, FORWARD, s);
+    }
+
+    public LSystem move(char symbol, double s) {
+        return op(symbol, MOVE, s);
+    }
+
+    public LSystem rotate(char symbol, double theta) {
+        return op(symbol, ROTATE, theta);
+    }
+
+    public LSystem scale(char symbol, double s) {
+        return op(symbol, SCALE, s);
+    }
+
+    public LSystem push(char symbol) {
+        return op(symbol, PUSH, 0);
+    }
+
+    public LSystem pop(char symbol) {
+        return op(symbol, POP, 0);
+    }
+
+    private LSystem op(char symbol, int code, double param) {
+        Map<Character, double[]> o = new HashMap<>(ops);
+        o.put(symbol, new double[] {code, param});
+
+        return new LSystem(axiom, rules, o);
+    }
+
+    // Segments drawn at depth, without running the turtle.
+    public long segments(int depth) {
+        return program().segments(depth);
+    }
+
+    // Streams the segments at depth, starting at the origin facing [1, 0].
+    public void run(int depth, SegmentSink sink) {
+        program().run(depth, sink);
+    }
+
+    // The segments at depth, two rows each, as Turtle.image() would give them.
+    public Matrix image(int depth) {
+        long segments = segments(depth);
+
+        if (segments * 6 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("L-system image is too large!");
+        }
+
+        double[] data = new double[(int) (segments * 6)];
+        int[] n = new int[1];
+
+        run(depth, (x0, y0, x1, y1) -> {
+            int o = n[0];
+
+            data[o] = x0;
+            data[o + 1] = y0;
+            data[o + 2] = 1;
+            data[o + 3] = x1;
+            data[o + 4] = y1;
+            data[o + 5] = 1;
+
+            n[0] = o + 6;
+        });
+
+        return new Matrix((int) (segments * 2), 3, data);
+    }
+
+    // Same segments as image(depth) within EPS, with large subtrees built in parallel on pool.
+    // Each subtree starts from the state given by the net effect of the symbols before it,
+    // composed in closed form, so it can differ from the sequential run by rounding.
+    // Falls back to image(depth) if brackets are not balanced in the axiom and every rule.
+    public Matrix image(int depth, ForkJoinPool pool) {
+        Program p = program();
+        long segments = segments(depth);
+
+        if (segments * 6 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("L-system image is too large!");
+        }
+
+        if (!p.balanced || segments < PARALLEL_SEGMENTS) {
+            return image(depth);
+        }
+
+        double[] out = new double[(int) (segments * 6)];
+
+        pool.invoke(new Expand(p, p.counts(depth), p.nets(depth), out,
+                p.axiom, p.axiomMatch, 0, p.axiom.length, depth, 0, 0, 1, 0, 0));
+
+        return new Matrix((int) (segments * 2), 3, out);
+    }
+
+    Program program() {
+        Program p = program;
+
+        if (p == null) {
+            p = new Program(this);
+            program = p;
+        }
+
+        return p;
+    }
+
+    /**
+     * Compiled form, symbols are ids into flat tables.
+     */
+    static final class Program {
+        final int[] axiom;
+        final int[][] rules;     // null for symbols without a rule
+
+        final int[] codes;
+        final double[] param;    // length for FORWARD / MOVE, factor for SCALE
+        final double[] cos;      // for ROTATE
+        final double[] sin;
+
+        // Bracket matches of the axiom and each rule, see match.
+        // balanced is false if any is null, then runs stay sequential.
+        final int[] axiomMatch;
+        final int[][] matches;
+        final boolean balanced;
+
+        private Program(LSystem ls) {
+            Map<Character, Integer> ids = new HashMap<>();
+
+            collect(ids, ls.axiom);
+            for (Map.Entry<Character, String> e : ls.rules.entrySet()) {
+                id(ids, e.getKey());
+                collect(ids, e.getValue());
+            }
+            for (Character c : ls.ops.keySet()) {
+                id(ids, c);
+            }
+
+            int n = ids.size();
+
+            rules = new int[n][];
+            codes = new int[n];
+            param = new double[n];
+            cos = new double[n];
+            sin = new double[n];
+
+            axiom = compile(ids, ls.axiom);
+
+            for (Map.Entry<Character, String> e : ls.rules.entrySet()) {
+                rules[ids.get(e.getKey())] = compile(ids, e.getValue());
+            }
+
+            for (Map.Entry<Character, double[]> e : ls.ops.entrySet()) {
+                int id = ids.get(e.getKey());
+                int code = (int) e.getValue()[0];
+                double p = e.getValue()[1];
+
+                codes[id] = code;
+                param[id] = p;
+
+                if (code == ROTATE) {
+                    // Same constants as Affine2D.rotation.
+                    cos[id] = Math.cos(p);
+                    sin[id] = Math.sin(p);
+                }
+            }
+
+            boolean ok = true;
+
+            axiomMatch = match(axiom);
+            ok &= axiomMatch != null;
+
+            matches = new int[n][];
+            for (int id = 0; id < n; id++) {
+                if (rules[id] != null) {
+                    matches[id] = match(rules[id]);
+                    ok &= matches[id] != null;
+                }
+            }
+
+            balanced = ok;
+        }
+
+        private static void collect(Map<Character, Integer> ids, String s) {
+            for (int i = 0; i < s.length(); i++) {
+                id(ids, s.charAt(i));
+            }
+        }
+
+        private static int id(Map<Character, Integer> ids, char c) {
+            Integer id = ids.get(c);
+
+            if (id == null) {
+                id = ids.size();
+                ids.put(c, id);
+            }
+
+            return id;
+        }
+
+        private static int[] compile(Map<Character, Integer> ids, String s) {
+            int[] code = new int[s.length()];
+
+            for (int i = 0; i < code.length; i++) {
+                code[i] = ids.get(s.charAt(i));
+            }
+
+            return code;
+        }
+
+        // counts[d][id] is the segments symbol id draws at depth d.
+        long[][] counts(int depth) {
+            if (depth < 0) {
+                throw new IllegalArgumentException("Depth cannot be negative!");
+            }
+
+            long[][] counts = new long[depth + 1][codes.length];
+
+            for (int id = 0; id < codes.length; id++) {
+                counts[0][id] = codes[id] == FORWARD ? 1 : 0;
+            }
+
+            for (int d = 1; d <= depth; d++) {
+                for (int id = 0; id < codes.length; id++) {
+                    if (rules[id] == null) {
+                        counts[d][id] = counts[d - 1][id];
+                        continue;
+                    }
+
+                    long sum = 0;
+
+                    for (int s : rules[id]) {
+                        sum = Math.addExact(sum, counts[d - 1][s]);
+                    }
+
+                    counts[d][id] = sum;
+                }
+            }
+
+            return counts;
+        }
+
+        long segments(int depth) {
+            long[] counts = counts(depth)[depth];
+            long total = 0;
+
+            for (int s : axiom) {
+                total = Math.addExact(total, counts[s]);
+            }
+
+            return total;
+        }
+
+        /**
+         * nets[d][4 * id ...] is the net effect of symbol id at depth d, as two complex numbers P and D.
+         * Run from position p facing v, it ends at p + vP facing vD.
+         * Only valid when balanced, so every bracket group has no net effect.
+         */
+        double[][] nets(int depth) {
+            int n = codes.length;
+            double[][] nets = new double[depth + 1][4 * n];
+
+            for (int id = 0; id < n; id++) {
+                double[] net = nets[0];
+                int o = 4 * id;
+
+                net[o + 2] = 1;
+
+                switch (codes[id]) {
+                    case FORWARD:
+                    case MOVE:
+                        net[o] = param[id];
+                        break;
+                    case ROTATE:
+                        net[o + 2] = cos[id];
+                        net[o + 3] = sin[id];
+                        break;
+                    case SCALE:
+                        net[o + 2] = param[id];
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            double[] acc = new double[4];
+
+            for (int d = 1; d <= depth; d++) {
+                for (int id = 0; id < n; id++) {
+                    if (rules[id] == null) {
+                        System.arraycopy(nets[d - 1], 4 * id, nets[d], 4 * id, 4);
+                        continue;
+                    }
+
+                    acc[0] = 0;
+                    acc[1] = 0;
+                    acc[2] = 1;
+                    acc[3] = 0;
+
+                    int[] body = rules[id];
+                    int[] match = matches[id];
+
+                    for (int i = 0; i < body.length; i++) {
+                        if (match[i] >= 0) {
+                            // Bracket groups leave the turtle as it was.
+                            i = match[i];
+                            continue;
+                        }
+
+                        compose(acc, nets[d - 1], 4 * body[i]);
+                    }
+
+                    System.arraycopy(acc, 0, nets[d], 4 * id, 4);
+                }
+            }
+
+            return nets;
+        }
+
+        // acc = acc, then net[o ...].
+        private static void compose(double[] acc, double[] net, int o) {
+            double px = net[o], py = net[o + 1];
+            double vx = net[o + 2], vy = net[o + 3];
+
+            double dx = acc[2], dy = acc[3];
+
+            acc[0] += (dx * px) - (dy * py);
+            acc[1] += (dx * py) + (dy * px);
+            acc[2] = (dx * vx) - (dy * vy);
+            acc[3] = (dx * vy) + (dy * vx);
+        }
+
+        void run(int depth, SegmentSink sink) {
+            if (depth < 0) {
+                throw new IllegalArgumentException("Depth cannot be negative!");
+            }
+
+            run(axiom, 0, axiom.length, depth, 0, 0, 1, 0, sink);
+        }
+
+        // Runs start[from, to) at depth, from position (x, y) facing (dx, dy).
+        void run(int[] start, int from, int to, int depth, double x, double y, double dx, double dy,
+                 SegmentSink sink) {
+            // Frame f runs code[f] at depth - f, from pc[f] up to end[f].
+            int[][] code = new int[depth + 1][];
+            int[] pc = new int[depth + 1];
+            int[] end = new int[depth + 1];
+            int top = 0;
+
+            code[0] = start;
+            pc[0] = from;
+            end[0] = to;
+
+            double[] saved = new double[4 * 16];
+            int sp = 0;
+
+            while (top >= 0) {
+                if (pc[top] == end[top]) {
+                    top--;
+                    continue;
+                }
+
+                int s = code[top][pc[top]++];
+
+                if (top < depth && rules[s] != null) {
+                    top++;
+                    code[top] = rules[s];
+                    pc[top] = 0;
+                    end[top] = rules[s].length;
+                    continue;
+                }
+
+                switch (codes[s]) {
+                    case FORWARD: {
+                        double nx = x + (dx * param[s]);
+                        double ny = y + (dy * param[s]);
+
+                        sink.segment(x, y, nx, ny);
+
+                        x = nx;
+                        y = ny;
+                        break;
+                    }
+                    case MOVE:
+                        x = x + (dx * param[s]);
+                        y = y + (dy * param[s]);
+                        break;
+                    case ROTATE: {
+                        double c = cos[s];
+                        double sn = sin[s];
+                        double ndx = (dx * c) - (dy * sn);
+
+                        dy = (dx * sn) + (dy * c);
+                        dx = ndx;
+                        break;
+                    }
+                    case SCALE:
+                        dx = dx * param[s];
+                        dy = dy * param[s];
+                        break;
+                    case PUSH:
+                        if (sp == saved.length) {
+                            saved = Arrays.copyOf(saved, saved.length * 2);
+                        }
+
+                        saved[sp] = x;
+                        saved[sp + 1] = y;
+                        saved[sp + 2] = dx;
+                        saved[sp + 3] = dy;
+                        sp += 4;
+                        break;
+                    case POP:
+                        if (sp == 0) {
+                            throw new IllegalStateException("L-system pops an empty stack!");
+                        }
+
+                        sp -= 4;
+                        x = saved[sp];
+                        y = saved[sp + 1];
+                        dx = saved[sp + 2];
+                        dy = saved[sp + 3];
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        // match[i] is the index of the POP closing a PUSH at i, otherwise -1.
+        // Returns null if code pops below its start or leaves pushes open.
+        private int[] match(int[] code) {
+            int[] match = new int[code.length];
+            int[] open = new int[code.length];
+            int n = 0;
+
+            for (int i = 0; i < code.length; i++) {
+                match[i] = -1;
+                int c = codes[code[i]];
+
+                // Brackets which also rewrite have no fixed effect.
+                if ((c == PUSH || c == POP) && rules[code[i]] != null) {
+                    return null;
+                }
+
+                if (c == PUSH) {
+                    open[n++] = i;
+                } else if (c == POP) {
+                    if (n == 0) {
+                        return null;
+                    }
+
+                    match[open[--n]] = i;
+                }
+            }
+
+            return n == 0 ? match : null;
+        }
+    }
+
+    /**
+     * Writes the segments of code[from, to) at depth into out, from segment offset on.
+     *
+     * The start state of each symbol is the task's start state after the nets of the ones before it,
+     * and its offset the sum of their counts. So symbols, and bracket groups, with many segments
+     * become tasks of their own, and small ones run in place.
+     */
+    @SuppressWarnings("serial")
+    private static final class Expand extends RecursiveAction {
+        private final Program program;
+        private final long[][] counts;
+        private final double[][] nets;
+        private final double[] out;
+
+        private final int[] code;
+        private final int[] match;
+        private final int from;
+        private final int to;
+        private final int depth;
+
+        private final double x, y, dx, dy;
+        private final long offset;
+
+        private Expand(Program program, long[][] counts, double[][] nets, double[] out,
+                       int[] code, int[] match, int from, int to, int depth,
+                       double x, double y, double dx, double dy, long offset) {
+            this.program = program;
+            this.counts = counts;
+            this.nets = nets;
+            this.out = out;
+            this.code = code;
+            this.match = match;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.x = x;
+            this.y = y;
+            this.dx = dx;
+            this.dy = dy;
+            this.offset = offset;
+        }
+
+        private long count(int i, int j) {
+            long n = 0;
+
+            for (int k = i; k < j; k++) {
+                n += counts[depth][code[k]];
+            }
+
+            return n;
+        }
+
+        @Override
+        protected void compute() {
+            if (count(from, to) < PARALLEL_SEGMENTS) {
+                write(program, out, code, from, to, depth, x, y, dx, dy, offset);
+                return;
+            }
+
+            List<Expand> tasks = new ArrayList<>();
+
+            double[] acc = {0, 0, 1, 0};
+            long o = offset;
+
+            for (int i = from; i < to; i++) {
+                // Start state, the task's state after acc.
+                double sx = x + ((dx * acc[0]) - (dy * acc[1]));
+                double sy = y + ((dx * acc[1]) + (dy * acc[0]));
+                double sdx = (dx * acc[2]) - (dy * acc[3]);
+                double sdy = (dx * acc[3]) + (dy * acc[2]);
+
+                if (match[i] >= 0) {
+                    // Inside the group, then back to the state before it.
+                    int close = match[i];
+                    long n = count(i + 1, close);
+
+                    tasks.add(new Expand(program, counts, nets, out, code, match, i + 1, close, depth,
+                            sx, sy, sdx, sdy, o));
+
+                    o += n;
+                    i = close;
+                    continue;
+                }
+
+                int s = code[i];
+                long n = counts[depth][s];
+
+                if (depth > 0 && program.rules[s] != null) {
+                    tasks.add(new Expand(program, counts, nets, out, program.rules[s], program.matches[s],
+                            0, program.rules[s].length, depth - 1, sx, sy, sdx, sdy, o));
+                } else if (n > 0) {
+                    write(program, out, code, i, i + 1, depth, sx, sy, sdx, sdy, o);
+                }
+
+                o += n;
+                Program.compose(acc, nets[depth], 4 * s);
+            }
+
+            invokeAll(tasks);
+        }
+
+        private static void write(Program program, double[] out, int[] code, int from, int to, int depth,
+                                  double x, double y, double dx, double dy, long offset) {
+            int[] n = {(int) (offset * 6)};
+
+            program.run(code, from, to, depth, x, y, dx, dy, (x0, y0, x1, y1) -> {
+                int o = n[0];
+
+                out[o] = x0;
+                out[o + 1] = y0;
+                out[o + 2] = 1;
+                out[o + 3] = x1;
+                out[o + 4] = y1;
+                out[o + 5] = 1;
+
+                n[0] = o + 6;
+            });
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package math;
+
+/**
+ * LU decomposition with partial pivoting of a square Matrix.
+ * PA = LU, where L is unit lower triangular and U is upper triangular.
+ *
+ * Factor once with Matrix.lu(), then solve for as many right hand sides as needed.
+ * Each solve costs O(n^2), the factorization O(n^3).
+ *
+ * NOTE, unlike the rest of the package, solve works on columns.
+ * lu.solve(b) returns x such that Ax = b.
+ */
+public class LU {
+    private final int n;
+
+    // L below the diagonal (implicit unit diagonal), U on and above it.
+    private final double[] lu;
+
+    // Row i of PA is row piv[i] of A.
+    private final int[] piv;
+    private final int pivSign;
+
+    // 1-norm of A, used for the condition estimate.
+    private final double norm;
+
+    // Condition estimate, computed on first use. -1 until then.
+    private volatile double condition = -1;
+
+    LU(Matrix m) {
+        if (m.rows() != m.cols()) {
+            throw new IllegalArgumentException("Can only decompose a square matrix!");
+        }
+
+        n = m.rows();
+        lu = m.data().clone();
+        piv = new int[n];
+
+        norm = Util.norm1(lu, n);
+
+        for (int i = 0; i < n; i++) {
+            piv[i] = i;
+        }
+
+        int sign = 1;
+
+        for (int k = 0; k < n; k++) {
+            // Find pivot.
+            int p = k;
+            double max = Math.abs(lu[(k * n) + k]);
+
+            for (int r = k + 1; r < n; r++) {
+                double v = Math.abs(lu[(r * n) + k]);
+
+                if (v > max) {
+                    max = v;
+                    p = r;
+                }
+            }
+
+            if (p != k) {
+                for (int c = 0; c < n; c++) {
+                    double tmp = lu[(p * n) + c];
+                    lu[(p * n) + c] = lu[(k * n) + c];
+                    lu[(k * n) + c] = tmp;
+                }
+
+                int tmp = piv[p];
+                piv[p] = piv[k];
+                piv[k] = tmp;
+
+                sign = -sign;
+            }
+
+            double pivot = lu[(k * n) + k];
+
+            // Singular column, nothing to eliminate.
+            if (pivot == 0) {
+                continue;
+            }
+
+            for (int r = k + 1; r < n; r++) {
+                int row = r * n;
+                double l = lu[row + k] / pivot;
+                lu[row + k] = l;
+
+                if (l == 0) {
+                    continue;
+                }
+
+                for (int c = k + 1; c < n; c++) {
+                    lu[row + c] -= l * lu[(k * n) + c];
+                }
+            }
+        }
+
+        pivSign = sign;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public double determinant() {
+        double det = pivSign;
+
+        for (int i = 0; i < n; i++) {
+            det *= lu[(i * n) + i];
+        }
+
+        return det;
+    }
+
+    // True when U has an exact zero on its diagonal,
+    // or when A is too badly conditioned for solutions to mean anything.
+    public boolean isSingular() {
+        return Util.isSingular(conditionEstimate());
+    }
+
+    // Estimate of the 1-norm condition number, ||A|| * ||A^-1||.
+    // Infinite when A is exactly singular. Computed once per factorization.
+    public double conditionEstimate() {
+        double c = condition;
+
+        if (c < 0) {
+            c = hasZeroPivot() ? Double.POSITIVE_INFINITY : norm * inverseNormEstimate();
+            condition = c;
+        }
+
+        return c;
+    }
+
+    private boolean hasZeroPivot() {
+        for (int i = 0; i < n; i++) {
+            if (lu[(i * n) + i] == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public double reciprocalCondition() {
+        return 1.0 / conditionEstimate();
+    }
+
+    // b must have n rows, any number of columns.
+    public Matrix solve(Matrix b) {
+        if (b.rows() != n) {
+            throw new IllegalArgumentException("Bad dimensions for solve.");
+        }
+
+        checkSingular();
+
+        int cols = b.cols();
+        double[] bData = b.data();
+        double[] x = new double[n * cols];
+        double[] col = new double[n];
+
+        for (int c = 0; c < cols; c++) {
+            for (int r = 0; r < n; r++) {
+                col[r] = bData[(piv[r] * cols) + c];
+            }
+
+            solveInPlace(col);
+
+            for (int r = 0; r < n; r++) {
+                x[(r * cols) + c] = col[r];
+            }
+        }
+
+        return new Matrix(n, cols, x);
+    }
+
+    public Matrix inverse() {
+        return solve(Matrix.i(n));
+    }
+
+    private void checkSingular() {
+        if (isSingular()) {
+            throw new ArithmeticException("Matrix is singular!");
+        }
+    }
+
+    // Solves LUx = v, v is already permuted. Result is left in v.
+    private void solveInPlace(double[] v) {
+        for (int r = 1; r < n; r++) {
+            double sum = v[r];
+
+            for (int k = 0; k < r; k++) {
+                sum -= lu[(r * n) + k] * v[k];
+            }
+
+            v[r] = sum;
+        }
+
+        for (int r = n - 1; r >= 0; r--) {
+            double sum = v[r];
+
+            for (int k = r + 1; k < n; k++) {
+                sum -= lu[(r * n) + k] * v[k];
+            }
+
+            v[r] = sum / lu[(r * n) + r];
+        }
+    }
+
+    // Solves A^T x = v, result is returned in a new array.
+    // A^T = U^T L^T P, so solve U^T, then L^T, then undo P.
+    private double[] solveTranspose(double[] v) {
+        double[] w = v.clone();
+
+        for (int r = 0; r < n; r++) {
+            double sum = w[r];
+
+            for (int k = 0; k < r; k++) {
+                sum -= lu[(k * n) + r] * w[k];
+            }
+
+            w[r] = sum / lu[(r * n) + r];
+        }
+
+        for (int r = n - 1; r >= 0; r--) {
+            double sum = w[r];
+
+            for (int k = r + 1; k < n; k++) {
+                sum -= lu[(k * n) + r] * w[k];
+            }
+
+            w[r] = sum;
+        }
+
+        double[] x = new double[n];
+        for (int r = 0; r < n; r++) {
+            x[piv[r]] = w[r];
+        }
+
+        return x;
+    }
+
+    // Hager's estimate of ||A^-1||, a lower bound which is almost always within a small factor.
+    // Costs a few solves rather than forming the inverse.
+    private double inverseNormEstimate() {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 1.0 / n;
+        }
+
+        double est = 0;
+
+        for (int iter = 0; iter < 5; iter++) {
+            double[] y = new double[n];
+            for (int r = 0; r < n; r++) {
+                y[r] = x[piv[r]];
+            }
+            solveInPlace(y);
+
+            double newEst = 0;
+            for (int i = 0; i < n; i++) {
+                newEst += Math.abs(y[i]);
+            }
+
+            if (iter > 0 && newEst <= est) {
+                break;
+            }
+            est = newEst;
+
+            double[] signs = new double[n];
+            for (int i = 0; i < n; i++) {
+                signs[i] = y[i] >= 0 ? 1 : -1;
+            }
+
+            double[] z = solveTranspose(signs);
+
+            int j = 0;
+            double zx = 0;
+            for (int i = 0; i < n; i++) {
+                zx += z[i] * x[i];
+
+                if (Math.abs(z[i]) > Math.abs(z[j])) {
+                    j = i;
+                }
+            }
+
+            if (iter > 0 && Math.abs(z[j]) <= zx) {
+                break;
+            }
+
+            x = new double[n];
+            x[j] = 1;
+        }
+
+        return est;
+    }
+}
@@ -0,0 +1,202 @@
+package math;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import static math.Util.*;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * LineMesh is an indexed version of line geometry.
+ *
+ * Line output (rows 2i and 2i + 1 are segment i) repeats every shared endpoint.
+ * Here each point is stored once, and segment i runs from vertex indices[2i] to vertex indices[2i + 1].
+ *
+ * Points are merged when they are equal in the sense of Item.equals,
+ * i.e. every coordinate is within EPS. A point merges into the first stored vertex it matches.
+ *
+ * draw2D hands GL the unique vertices and the indices as direct buffers, built on first draw
+ * and kept, and draws them with one glDrawElements. So each shared endpoint is sent once.
+ */
+public class LineMesh {
+    // Cell side of the spatial hash. A point only needs to check the cells
+    // its EPS box overlaps, at most 2 per axis.
+    private static final double CELL = 2 * EPS;
+
+    public static LineMesh of(Matrix lines) {
+        if (lines.cols() != 3 || lines.rows() % 2 == 1) {
+            throw new IllegalArgumentException("LineMesh requires 2D segments!");
+        }
+
+        double[] data = lines.data();
+        int n = lines.rows();
+
+        VertexIndex index = new VertexIndex(n);
+        int[] indices = new int[n];
+
+        for (int r = 0; r < n; r++) {
+            indices[r] = index.add(data, r * 3);
+        }
+
+        return new LineMesh(index.vertices(), indices);
+    }
+
+    private static final int STRIDE = 3 * Double.BYTES;
+
+    private final Matrix vertices;
+    private final int[] indices;
+
+    // Direct copies for GL, null until the first draw2D.
+    private ByteBuffer vertexBuffer;
+    private IntBuffer indexBuffer;
+
+    private LineMesh(Matrix vertices, int[] indices) {
+        this.vertices = vertices;
+        this.indices = indices;
+    }
+
+    public Matrix vertices() {
+        return vertices;
+    }
+
+    public int[] indices() {
+        return indices.clone();
+    }
+
+    public int segments() {
+        return indices.length / 2;
+    }
+
+    // Back to one row per segment endpoint.
+    public Matrix toLines() {
+        double[] v = vertices.data();
+        double[] data = new double[indices.length * 3];
+
+        for (int i = 0; i < indices.length; i++) {
+            System.arraycopy(v, indices[i] * 3, data, i * 3, 3);
+        }
+
+        return new Matrix(indices.length, 3, data);
+    }
+
+    // Number of segments touching each vertex.
+    public int[] degrees() {
+        int[] deg = new int[vertices.rows()];
+
+        for (int i : indices) {
+            deg[i]++;
+        }
+
+        return deg;
+    }
+
+    // Draws the segments as GL_LINES, from the GL thread.
+    public void draw2D() {
+        if (indices.length == 0) {
+            return;
+        }
+
+        if (vertexBuffer == null) {
+            double[] v = vertices.data();
+
+            vertexBuffer = ByteBuffer.allocateDirect(v.length * Double.BYTES).order(ByteOrder.nativeOrder());
+            vertexBuffer.asDoubleBuffer().put(v);
+
+            indexBuffer = ByteBuffer.allocateDirect(indices.length * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+            indexBuffer.put(indices).flip();
+        }
+
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glVertexPointer(2, GL_DOUBLE, STRIDE, vertexBuffer);
+        glDrawElements(GL_LINES, indexBuffer);
+        glDisableClientState(GL_VERTEX_ARRAY);
+    }
+
+    /**
+     * Spatial hash from quantized (x, y) cells to the unique vertices in them.
+     * Buckets are chained through flat int arrays, nothing is boxed.
+     */
+    private static class VertexIndex {
+        private final int[] heads;
+        private final int mask;
+
+        private final int[] next;
+        private final long[] cellX;
+        private final long[] cellY;
+
+        private final double[] verts;
+        private int size;
+
+        private VertexIndex(int maxVerts) {
+            int buckets = Integer.highestOneBit(Math.max(maxVerts, 1)) * 2;
+
+            heads = new int[buckets];
+            mask = buckets - 1;
+
+            for (int i = 0; i < buckets; i++) {
+                heads[i] = -1;
+            }
+
+            next = new int[maxVerts];
+            cellX = new long[maxVerts];
+            cellY = new long[maxVerts];
+            verts = new double[maxVerts * 3];
+        }
+
+        private static long cell(double v) {
+            return (long) Math.floor(v / CELL);
+        }
+
+        private int bucket(long cx, long cy) {
+            long h = (cx * 0x9E3779B97F4A7C15L) ^ (cy * 0xC2B2AE3D27D4EB4FL);
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        // Index of the vertex equal to data[off ... off + 2], added if new.
+        private int add(double[] data, int off) {
+            double x = data[off];
+            double y = data[off + 1];
+            double w = data[off + 2];
+
+            long loX = cell(x - EPS), hiX = cell(x + EPS);
+            long loY = cell(y - EPS), hiY = cell(y + EPS);
+
+            for (long cx = loX; cx <= hiX; cx++) {
+                for (long cy = loY; cy <= hiY; cy++) {
+                    for (int v = heads[bucket(cx, cy)]; v >= 0; v = next[v]) {
+                        if (cellX[v] == cx && cellY[v] == cy &&
+                                Math.abs(verts[v * 3] - x) <= EPS &&
+                                Math.abs(verts[(v * 3) + 1] - y) <= EPS &&
+                                Math.abs(verts[(v * 3) + 2] - w) <= EPS) {
+                            return v;
+                        }
+                    }
+                }
+            }
+
+            int v = size++;
+            long cx = cell(x);
+            long cy = cell(y);
+            int b = bucket(cx, cy);
+
+            cellX[v] = cx;
+            cellY[v] = cy;
+            next[v] = heads[b];
+            heads[b] = v;
+
+            System.arraycopy(data, off, verts, v * 3, 3);
+
+            return v;
+        }
+
+        private Matrix vertices() {
+            double[] data = new double[size * 3];
+            System.arraycopy(verts, 0, data, 0, data.length);
+
+            return new Matrix(size, 3, data);
+        }
+    }
+}
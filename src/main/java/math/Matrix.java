@@ -1,5 +1,7 @@
 package math;
 
+import java.nio.DoubleBuffer;
+
 import static math.Util.*;
 import static math.Item.*;
 
@@ -11,7 +13,7 @@ public class Matrix {
             throw new IllegalArgumentException("Cannot build empty sprite!");
         }
 
-        double[][] mat = new double[vertices.length][3];
+        double[] data = new double[vertices.length * 3];
 
         for (int i = 0; i < vertices.length; i++) {
             double[] vert = vertices[i].vals();
@@ -24,12 +26,10 @@ public class Matrix {
                 throw new IllegalArgumentException("Sprites must contain points only!");
             }
 
-            for (int j = 0; j < 3; j++) {
-                mat[i][j] = vert[j];
-            }
+            System.arraycopy(vert, 0, data, i * 3, 3);
         }
 
-        return new Matrix(mat);
+        return new Matrix(vertices.length, 3, data);
     }
 
     public static Matrix sprite2D(double... vertCoords) {
@@ -39,162 +39,192 @@ public class Matrix {
 
         int verts = vertCoords.length / 2;
 
-        double[][] mat = new double[verts][3];
+        double[] data = new double[verts * 3];
 
         for (int i = 0; i < verts; i++) {
-            mat[i][0] = vertCoords[2 * i];
-            mat[i][1] = vertCoords[(2 * i) + 1];
-            mat[i][2] = 1;
+            data[3 * i] = vertCoords[2 * i];
+            data[(3 * i) + 1] = vertCoords[(2 * i) + 1];
+            data[(3 * i) + 2] = 1;
         }
 
-        return new Matrix(mat);
+        return new Matrix(verts, 3, data);
     }
 
-    static double[][] identityArray(int n) {
-        double[][] mat = new double[n][n];
+    static double[] identityArray(int n) {
+        double[] data = new double[n * n];
 
         // Default value is all 0s, just need to set diagonal.
         for (int i = 0; i < n; i++) {
-            mat[i][i] = 1;
+            data[(i * n) + i] = 1;
         }
 
-        return mat;
+        return data;
     }
 
     public static Matrix i(int n) {
-        return new Matrix(identityArray(n));
+        return new Matrix(n, n, identityArray(n));
     }
 
-    private final double[][] mat;
+    // Row major, entry (r, c) is at data[(r * cols) + c].
+    private final int rows;
+    private final int cols;
+    private final double[] data;
 
-    Matrix(double[][] mat) {
-        this.mat = mat;
+    Matrix(int rows, int cols, double[] data) {
+        this.rows = rows;
+        this.cols = cols;
+        this.data = data;
     }
 
-    double[][] mat() {
-        return mat;
+    int rows() {
+        return rows;
     }
 
-    public double[] flat() {
-        double[] glMat = new double[mat.length * mat[0].length];
-        for (int i = 0; i < mat.length; i++) {
-            System.arraycopy(mat[i], 0, glMat, (i * mat[0].length), mat[0].length);
-        }
+    int cols() {
+        return cols;
+    }
 
-        return glMat;
+    double[] data() {
+        return data;
+    }
+
+    double val(int r, int c) {
+        return data[(r * cols) + c];
+    }
+
+    // Read only view of the row major values, nothing is copied.
+    public DoubleBuffer flat() {
+        return DoubleBuffer.wrap(data).asReadOnlyBuffer();
     }
 
     // NOTE, for speed there is no 2D check.
     public void draw2D() {
-        for (int i = 0; i < mat.length; i++) {
-            glVertex2d(mat[i][0], mat[i][1]);
+        for (int i = 0; i < data.length; i += cols) {
+            glVertex2d(data[i], data[i + 1]);
         }
     }
 
     public Matrix times(Matrix o) {
-        return new Matrix(mult(mat, o.mat()));
+        double[] oData = o.data();
+
+        // Points times a 3x3 transform, take the batch path.
+        if (cols == 3 && o.rows() == 3 && o.cols() == 3) {
+            if (oData[2] == 0 && oData[5] == 0 && oData[8] == 1) {
+                return this.times(Affine2D.of(o));
+            }
+
+            return new Matrix(rows, 3, PointKernel.transform(data, rows, oData));
+        }
+
+        return new Matrix(rows, o.cols(), mult(data, rows, cols, oData, o.rows(), o.cols()));
+    }
+
+    // NOTE, this requires rows of length 3.
+    public Matrix times(Affine2D t) {
+        if (cols != 3) {
+            throw new IllegalArgumentException("Bad dimensions for multiplication.");
+        }
+
+        return new Matrix(rows, 3, PointKernel.transform(data, rows, t));
     }
 
     public Matrix times(double s) {
-        double[][] newMat = new double[mat.length][mat[0].length];
+        double[] newData = new double[data.length];
 
-        for (int i = 0; i < mat.length; i++) {
-            for (int j = 0; j < mat[0].length; j++) {
-                newMat[i][j] = mat[i][j] * s;
+        if (data.length >= VectorKernel.MIN_POINTS && VectorKernel.available()) {
+            VectorKernel.scale(data, newData, s);
+        } else {
+            for (int i = 0; i < data.length; i++) {
+                newData[i] = data[i] * s;
             }
         }
 
-        return new Matrix(newMat);
+        return new Matrix(rows, cols, newData);
     }
 
-    // NOTE, this is not fast for big mats...
-    // Switch to dynamic programming in the future.
+    // Closed form up to 4x4, LU decomposition beyond that.
     public double determinant() {
-        if (mat.length != mat[0].length) {
+        if (rows != cols) {
             throw new RuntimeException("Can only take the determinant of a square matrix!");
         }
 
-        if (mat.length == 1) {
-            return mat[0][0];
-        }
-
-        double det = 0.0;
-
-        for (int j = 0; j < mat.length; j++) {
-            det += Math.pow(-1, j % 2) * mat[0][j] * minor(0, j).determinant();
+        switch (rows) {
+            case 1: return data[0];
+            case 2: return det2(data);
+            case 3: return det3(data);
+            case 4: return det4(data);
+            default: return lu().determinant();
         }
+    }
 
-        return det;
+    public LU lu() {
+        return new LU(this);
     }
 
     public Matrix minor(int x, int y) {
-        double[][] newMat = new double[mat.length - 1][mat[0].length - 1];
+        double[] newData = new double[(rows - 1) * (cols - 1)];
 
-        for (int i = 0; i < newMat.length; i++) {
-            for (int j = 0; j < newMat[0].length; j++) {
-                newMat[i][j] = mat[i < x ? i : i + 1][j < y ? j : j + 1];
+        for (int i = 0, k = 0; i < rows - 1; i++) {
+            for (int j = 0; j < cols - 1; j++, k++) {
+                newData[k] = val(i < x ? i : i + 1, j < y ? j : j + 1);
             }
         }
 
-        return new Matrix(newMat);
+        return new Matrix(rows - 1, cols - 1, newData);
     }
 
+    // Closed form up to 4x4, LU decomposition beyond that.
+    // Throws an ArithmeticException if this is singular, by the same condition test as LU
+    // whatever the size. Small sizes have the inverse at hand, so their condition is exact.
     public Matrix inverse() {
-        if (mat.length != mat[0].length) {
+        if (rows != cols) {
             throw new RuntimeException("Can only invert a square matrix.");
         }
 
-        double[][] newMat = new double[mat.length][mat.length];
-
-        double det = 0.0;
+        double[] inv;
 
-        for (int i = 0; i < mat.length; i++) {
-            for (int j = 0; j < mat.length; j++) {
-                newMat[j][i] = Math.pow(-1, (i + j) % 2) * minor(i, j).determinant();
-            }
+        switch (rows) {
+            case 1: inv = data[0] == 0 ? null : new double[] {1.0 / data[0]}; break;
+            case 2: inv = inverse2(data); break;
+            case 3: inv = inverse3(data); break;
+            case 4: inv = inverse4(data); break;
+            default: return lu().inverse();
+        }
 
-            det += mat[i][0] * newMat[0][i];
+        if (inv == null || Util.isSingular(Util.norm1(data, rows) * Util.norm1(inv, rows))) {
+            throw new ArithmeticException("Matrix is singular!");
         }
 
-        return (new Matrix(newMat)).times(1.0 / det);
+        return new Matrix(rows, rows, inv);
     }
 
     public Matrix concat(Matrix o) {
-        double[][] oMat = o.mat();
-
-        if (mat[0].length != oMat[0].length) {
+        if (cols != o.cols()) {
             throw new IllegalArgumentException("Cannot concat two matrices with different row lengths!");
         }
 
-        double[][] newMat = new double[mat.length + oMat.length][mat[0].length];
+        double[] oData = o.data();
+        double[] newData = new double[data.length + oData.length];
 
-        for (int i = 0; i < mat.length; i++) {
-            System.arraycopy(mat[i], 0, newMat[i], 0, mat[0].length);
-        }
+        System.arraycopy(data, 0, newData, 0, data.length);
+        System.arraycopy(oData, 0, newData, data.length, oData.length);
 
-        for (int i = 0; i < oMat.length; i++) {
-            System.arraycopy(oMat[i], 0, newMat[i + mat.length], 0, oMat[0].length);
-        }
-
-        return new Matrix(newMat);
+        return new Matrix(rows + o.rows(), cols, newData);
     }
 
     public Matrix concat(Item i) {
         double[] vals = i.vals();
 
-        if (vals.length != mat[0].length) {
+        if (vals.length != cols) {
             throw new IllegalArgumentException("Dimension mismatch for concat!");
         }
 
-        double[][] newMat = new double[mat.length + 1][mat[0].length];
-
-        for (int r = 0; r < newMat.length - 1; r++) {
-            System.arraycopy(mat[r], 0, newMat[r], 0, newMat[0].length);
-        }
+        double[] newData = new double[data.length + cols];
 
-        System.arraycopy(vals, 0, newMat[newMat.length - 1], 0, newMat[0].length);
+        System.arraycopy(data, 0, newData, 0, data.length);
+        System.arraycopy(vals, 0, newData, data.length, cols);
 
-        return new Matrix(newMat);
+        return new Matrix(rows + 1, cols, newData);
     }
 
     public boolean equals(Object o) {
@@ -203,17 +233,15 @@ public class Matrix {
         }
 
         Matrix m = (Matrix) o;
-        double[][] oMat = m.mat();
+        double[] oData = m.data();
 
-        if (mat.length != oMat.length || mat[0].length != oMat[0].length) {
+        if (rows != m.rows() || cols != m.cols()) {
             return false;
         }
 
-        for (int i = 0; i < mat.length; i++) {
-            for (int j = 0; j < mat[0].length; j++) {
-                if (Math.abs(mat[i][j] - oMat[i][j]) > EPS) {
-                    return false;
-                }
+        for (int i = 0; i < data.length; i++) {
+            if (Math.abs(data[i] - oData[i]) > EPS) {
+                return false;
             }
         }
 
@@ -223,20 +251,20 @@ public class Matrix {
     public String toString() {
         StringBuilder str = new StringBuilder("[");
 
-        for (int i = 0; i < mat.length; i++) {
+        for (int i = 0; i < rows; i++) {
             str.append("[");
 
-            for (int j = 0; j < mat[0].length; j++) {
-                str.append(mat[i][j]);
+            for (int j = 0; j < cols; j++) {
+                str.append(val(i, j));
 
-                if (j < mat[0].length - 1) {
+                if (j < cols - 1) {
                     str.append(", ");
                 }
             }
 
             str.append("]");
 
-            if (i < mat.length - 1) {
+            if (i < rows - 1) {
                 str.append(", ");
             }
         }
@@ -256,41 +284,19 @@ public class Matrix {
 
     public Matrix shift2D(double x, double y) {
         // NOTE, this shift ignores weight!
-        double[][] mat = identityArray(3);
-        mat[2][0] = x;
-        mat[2][1] = y;
-
-        return this.times(new Matrix(mat));
+        return this.times(Affine2D.shift(x, y));
     }
 
     public Matrix rotate2D(double theta) {
-        double[][] mat = identityArray(3);
-
-        mat[0][0] = Math.cos(theta);
-        mat[0][1] = Math.sin(theta);
-
-        mat[1][0] = -Math.sin(theta);
-        mat[1][1] = Math.cos(theta);
-
-        return this.times(new Matrix(mat));
+        return this.times(Affine2D.rotation(theta));
     }
 
     public Matrix scale2D(double s) {
-        double[][] mat = identityArray(3);
-
-        mat[0][0] = s;
-        mat[1][1] = s;
-
-        return this.times(new Matrix(mat));
+        return this.times(Affine2D.scaling(s, s));
     }
 
     public Matrix scale2D(double sh, double sv) {
-        double[][] mat = identityArray(3);
-
-        mat[0][0] = sh;
-        mat[1][1] = sv;
-
-        return this.times(new Matrix(mat));
+        return this.times(Affine2D.scaling(sh, sv));
     }
 
     public Matrix rotate2D(Item p, double theta) {
@@ -332,18 +338,7 @@ public class Matrix {
     }
 
     public Matrix scale2D(double px, double py, double vx, double vy, double s) {
-        double[][] mat = identityArray(3);
-        mat[0][0] = s;
-
-        Matrix xDirScale = new Matrix(mat);
-
-        double theta = Math.atan(vy / vx);
-
-        return this.shift2D(-px, -py)
-                .rotate2D(-theta)
-                .times(xDirScale)
-                .rotate2D(theta)
-                .shift2D(px, py);
+        return this.times(Affine2D.i().scale2D(px, py, vx, vy, s));
     }
 
     public Matrix affineTrans2D(Item q1, Item q2, Item q3, Item p1, Item p2, Item p3) {
@@ -352,15 +347,20 @@ public class Matrix {
             throw new IllegalArgumentException("AffineTrans2D requires 6 points!");
         }
 
-        Item qv1 = q2.minus(q1).asVector();
-        Item qv2 = q3.minus(q1).asVector();
+        double[] q1v = q1.vals(), q2v = q2.vals(), q3v = q3.vals();
+        double[] p1v = p1.vals(), p2v = p2.vals(), p3v = p3.vals();
 
-        Matrix back = affineTrans2D(q1, qv1, qv2).inverse();
+        Affine2D back = Affine2D.of(
+                q2v[0] - q1v[0], q2v[1] - q1v[1],
+                q3v[0] - q1v[0], q3v[1] - q1v[1],
+                q1v[0], q1v[1]
+        ).inverse();
 
-        Item pv1 = p2.minus(p1).asVector();
-        Item pv2 = p3.minus(p1).asVector();
-
-        Matrix forward = affineTrans2D(p1, pv1, pv2);
+        Affine2D forward = Affine2D.of(
+                p2v[0] - p1v[0], p2v[1] - p1v[1],
+                p3v[0] - p1v[0], p3v[1] - p1v[1],
+                p1v[0], p1v[1]
+        );
 
         return this.times(back.times(forward));
     }
@@ -378,18 +378,7 @@ public class Matrix {
     }
 
     public Matrix affineTrans2D(double a, double b, double c, double d, double e, double f) {
-        double[][] mat = identityArray(3);
-
-        mat[0][0] = a;
-        mat[0][1] = b;
-
-        mat[1][0] = c;
-        mat[1][1] = d;
-
-        mat[2][0] = e;
-        mat[2][1] = f;
-
-        return this.times(new Matrix(mat));
+        return this.times(Affine2D.of(a, b, c, d, e, f));
     }
 
     public Matrix flip2D(Item p, Item v) {
@@ -409,17 +398,11 @@ public class Matrix {
         Item opv = o.minus(p);  // PO vector.
         Item op = p.plus(opv.minus(opv.minus(vn.times(vn.dot(opv))).times(2.0)));  // P + PO'
 
-        double[][] matv = identityArray(3);
-
-        double[][] copyVals = new double[][] {
-            ip.vals(), jp.vals(), op.vals()
-        };
-
-        for (int r = 0; r < 3; r++) {
-            System.arraycopy(copyVals[r], 0, matv[r], 0, 2);
-        }
-
-        return this.times(new Matrix(matv));
+        return this.times(Affine2D.of(
+                ip.val(0), ip.val(1),
+                jp.val(0), jp.val(1),
+                op.val(0), op.val(1)
+        ));
     }
 
     public Matrix flip2D(double px, double py, double vx, double vy) {
@@ -0,0 +1,203 @@
+package math;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayDeque;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * PointBuffer holds 2D geometry off heap, in a direct native order DoubleBuffer.
+ *
+ * Layout is the same as a 3 column Matrix, [x, y, w] per point.
+ * So GL can read the memory directly as a vertex array (see draw2D),
+ * with no copy through a heap array.
+ *
+ * Lifetime is explicit, close a buffer when done with it.
+ * Buffers from a Pool go back to that Pool on close, to be reused next frame.
+ */
+public class PointBuffer implements AutoCloseable {
+    private static final int STRIDE = 3 * Double.BYTES;
+
+    // Direct buffers are indexed by int bytes.
+    public static final int MAX_POINTS = 1 << 26;
+
+    public static PointBuffer allocate(int capacity) {
+        return new PointBuffer(capacity, null);
+    }
+
+    private final ByteBuffer bytes;
+    private final DoubleBuffer buf;
+    private final int capacity;
+    private final Pool pool;
+
+    private int points;
+    private boolean closed;
+
+    private PointBuffer(int capacity, Pool pool) {
+        if (capacity < 0 || capacity > MAX_POINTS) {
+            throw new IllegalArgumentException("PointBuffer capacity out of range!");
+        }
+
+        this.capacity = capacity;
+        this.pool = pool;
+
+        bytes = ByteBuffer.allocateDirect(capacity * STRIDE).order(ByteOrder.nativeOrder());
+        buf = bytes.asDoubleBuffer();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int points() {
+        return points;
+    }
+
+    // Sets how many points are in use, values are not cleared.
+    public void points(int p) {
+        if (p < 0 || p > capacity) {
+            throw new IllegalArgumentException("Point count out of range!");
+        }
+
+        points = p;
+    }
+
+    // Raw storage, for writers in this package.
+    DoubleBuffer raw() {
+        checkOpen();
+        return buf;
+    }
+
+    // View of the points in use, position 0.
+    public DoubleBuffer buffer() {
+        checkOpen();
+
+        DoubleBuffer view = buf.duplicate();
+        view.position(0);
+        view.limit(points * 3);
+
+        return view;
+    }
+
+    public double val(int point, int c) {
+        return buf.get((point * 3) + c);
+    }
+
+    public void put(int point, Matrix m) {
+        if (m.cols() != 3) {
+            throw new IllegalArgumentException("PointBuffer requires 3 columns!");
+        }
+
+        checkOpen();
+
+        DoubleBuffer view = buf.duplicate();
+        view.position(point * 3);
+        view.put(m.data());
+    }
+
+    public Matrix toMatrix() {
+        double[] data = new double[points * 3];
+        buffer().get(data);
+
+        return new Matrix(points, 3, data);
+    }
+
+    // Draws all points in one call, GL reads straight from this buffer.
+    // NOTE, for speed there is no 2D check.
+    public void draw2D(int mode) {
+        checkOpen();
+
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glVertexPointer(2, GL_DOUBLE, STRIDE, bytes);
+        glDrawArrays(mode, 0, points);
+        glDisableClientState(GL_VERTEX_ARRAY);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("PointBuffer is closed!");
+        }
+    }
+
+    /**
+     * Pool of PointBuffers, bucketed by power of 2 capacity.
+     * Memory is kept until trim() is called, so a steady animation allocates nothing.
+     */
+    public static class Pool {
+        // buckets[i] holds free buffers of capacity 2^i.
+        private final ArrayDeque<PointBuffer>[] buckets;
+
+        private long retainedBytes;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public Pool() {
+            buckets = new ArrayDeque[bucket(MAX_POINTS) + 1];
+
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new ArrayDeque<>();
+            }
+        }
+
+        public synchronized PointBuffer acquire(int points) {
+            int bucket = bucket(points);
+            PointBuffer pb = buckets[bucket].poll();
+
+            if (pb == null) {
+                pb = new PointBuffer(1 << bucket, this);
+            } else {
+                retainedBytes -= (long) pb.capacity() * STRIDE;
+                pb.closed = false;
+            }
+
+            pb.points(points);
+
+            return pb;
+        }
+
+        // Bytes held by free buffers.
+        public synchronized long retainedBytes() {
+            return retainedBytes;
+        }
+
+        // Drops all free buffers, their memory is freed when collected.
+        public synchronized void trim() {
+            for (ArrayDeque<PointBuffer> bucket : buckets) {
+                bucket.clear();
+            }
+
+            retainedBytes = 0;
+        }
+
+        private synchronized void release(PointBuffer pb) {
+            buckets[bucket(pb.capacity())].push(pb);
+            retainedBytes += (long) pb.capacity() * STRIDE;
+        }
+
+        private static int bucket(int points) {
+            if (points > MAX_POINTS) {
+                throw new IllegalArgumentException("PointBuffer too large!");
+            }
+
+            return points <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(points - 1);
+        }
+    }
+}
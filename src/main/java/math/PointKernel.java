@@ -0,0 +1,184 @@
+package math;
+
+import java.nio.DoubleBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PointKernel holds the batch path for multiplying a tall (N x 3) point Matrix
+ * by a 3x3 transform. This is almost every product done by IFS and sprite code.
+ *
+ * Points are stored flat and row major, 3 values per point.
+ * Transforms are given either as an Affine2D, or as 9 row major values.
+ *
+ * Batches with at least 2 * PARALLEL_THRESHOLD points, enough for two tasks, are split across a ForkJoinPool.
+ * Each task writes a disjoint range of rows, so results do not depend on the split.
+ *
+ * On Java 17+, affine batches use SIMD lanes when VectorKernel is available.
+ */
+public final class PointKernel {
+    // Points per task below which we stay on the calling thread.
+    public static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private PointKernel() {
+
+    }
+
+    // True when affine batches run on SIMD lanes.
+    public static boolean vectorized() {
+        return VectorKernel.available();
+    }
+
+    // dst may be src.
+    public static void transform(double[] src, int srcOff, double[] dst, int dstOff, int points, Affine2D t) {
+        if (points >= VectorKernel.MIN_POINTS && VectorKernel.available()) {
+            VectorKernel.transform(src, srcOff, dst, dstOff, points, t);
+        } else {
+            transformScalar(src, srcOff, dst, dstOff, points, t);
+        }
+    }
+
+    // Scalar reference for transform, used on Java 8 and for batch tails.
+    public static void transformScalar(double[] src, int srcOff, double[] dst, int dstOff, int points,
+                                       Affine2D t) {
+        double a = t.a, b = t.b, c = t.c, d = t.d, e = t.e, f = t.f;
+
+        int end = srcOff + (points * 3);
+
+        for (int i = srcOff, j = dstOff; i < end; i += 3, j += 3) {
+            double x = src[i];
+            double y = src[i + 1];
+            double w = src[i + 2];
+
+            if (w == 1) {
+                dst[j] = (x * a) + (y * c) + e;
+                dst[j + 1] = (x * b) + (y * d) + f;
+            } else {
+                dst[j] = (x * a) + (y * c) + (w * e);
+                dst[j + 1] = (x * b) + (y * d) + (w * f);
+            }
+
+            dst[j + 2] = w;
+        }
+    }
+
+    // Same as transformScalar, on direct buffers (see PointBuffer).
+    public static void transform(DoubleBuffer src, int srcOff, DoubleBuffer dst, int dstOff, int points,
+                                 Affine2D t) {
+        double a = t.a, b = t.b, c = t.c, d = t.d, e = t.e, f = t.f;
+
+        int end = srcOff + (points * 3);
+
+        for (int i = srcOff, j = dstOff; i < end; i += 3, j += 3) {
+            double x = src.get(i);
+            double y = src.get(i + 1);
+            double w = src.get(i + 2);
+
+            if (w == 1) {
+                dst.put(j, (x * a) + (y * c) + e);
+                dst.put(j + 1, (x * b) + (y * d) + f);
+            } else {
+                dst.put(j, (x * a) + (y * c) + (w * e));
+                dst.put(j + 1, (x * b) + (y * d) + (w * f));
+            }
+
+            dst.put(j + 2, w);
+        }
+    }
+
+    // m holds a general 3x3 transform, row major.
+    // dst may not be src.
+    public static void transform(double[] src, int srcOff, double[] dst, int dstOff, int points, double[] m) {
+        double m0 = m[0], m1 = m[1], m2 = m[2];
+        double m3 = m[3], m4 = m[4], m5 = m[5];
+        double m6 = m[6], m7 = m[7], m8 = m[8];
+
+        int end = srcOff + (points * 3);
+
+        for (int i = srcOff, j = dstOff; i < end; i += 3, j += 3) {
+            double x = src[i];
+            double y = src[i + 1];
+            double w = src[i + 2];
+
+            dst[j] = (x * m0) + (y * m3) + (w * m6);
+            dst[j + 1] = (x * m1) + (y * m4) + (w * m7);
+            dst[j + 2] = (x * m2) + (y * m5) + (w * m8);
+        }
+    }
+
+    public static void transformParallel(double[] src, int srcOff, double[] dst, int dstOff, int points,
+                                         Affine2D t, ForkJoinPool pool) {
+        if (points < PARALLEL_THRESHOLD * 2) {
+            transform(src, srcOff, dst, dstOff, points, t);
+        } else {
+            pool.invoke(new Task(src, srcOff, dst, dstOff, points, t, null));
+        }
+    }
+
+    public static void transformParallel(double[] src, int srcOff, double[] dst, int dstOff, int points,
+                                         double[] m, ForkJoinPool pool) {
+        if (points < PARALLEL_THRESHOLD * 2) {
+            transform(src, srcOff, dst, dstOff, points, m);
+        } else {
+            pool.invoke(new Task(src, srcOff, dst, dstOff, points, null, m));
+        }
+    }
+
+    // Picks sequential or parallel based on size, using the common pool.
+    static double[] transform(double[] src, int points, Affine2D t) {
+        double[] dst = new double[points * 3];
+        transformParallel(src, 0, dst, 0, points, t, ForkJoinPool.commonPool());
+
+        return dst;
+    }
+
+    static double[] transform(double[] src, int points, double[] m) {
+        double[] dst = new double[points * 3];
+        transformParallel(src, 0, dst, 0, points, m, ForkJoinPool.commonPool());
+
+        return dst;
+    }
+
+    // Exactly one of t and m is non-null.
+    @SuppressWarnings("serial")
+    private static class Task extends RecursiveAction {
+        private final double[] src;
+        private final int srcOff;
+        private final double[] dst;
+        private final int dstOff;
+        private final int points;
+
+        private final Affine2D t;
+        private final double[] m;
+
+        private Task(double[] src, int srcOff, double[] dst, int dstOff, int points, Affine2D t, double[] m) {
+            this.src = src;
+            this.srcOff = srcOff;
+            this.dst = dst;
+            this.dstOff = dstOff;
+            this.points = points;
+            this.t = t;
+            this.m = m;
+        }
+
+        @Override
+        protected void compute() {
+            if (points < PARALLEL_THRESHOLD * 2) {
+                if (t != null) {
+                    transform(src, srcOff, dst, dstOff, points, t);
+                } else {
+                    transform(src, srcOff, dst, dstOff, points, m);
+                }
+
+                return;
+            }
+
+            int half = points / 2;
+
+            invokeAll(
+                    new Task(src, srcOff, dst, dstOff, half, t, m),
+                    new Task(src, srcOff + (half * 3), dst, dstOff + (half * 3), points - half, t, m)
+            );
+        }
+    }
+}
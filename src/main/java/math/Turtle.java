@@ -1,12 +1,23 @@
 package math;
 
-import java.util.function.UnaryOperator;
-
-import static math.Matrix.*;
-
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Turtle is an immutable 2D turtle, each step returns a new Turtle.
+ *
+ * The segments drawn so far are kept in a Path, a growable array shared between turtles.
+ * A turtle sees the first length values of its path. forward from the turtle at the tip
+ * of the path appends in place, in amortized O(1). forward from an older turtle, i.e. a branch,
+ * copies its prefix into a new Path first. Values below a turtle's length never change,
+ * so every turtle still sees exactly the segments it drew.
+ *
+ * So a chain of n steps costs O(n), where concatenating Matrices cost O(n^2).
+ */
 public class Turtle {
 
-    private static final Turtle T = new Turtle(Item.vector2D(1, 0), Item.point2D(0, 0), null);
+    private static final Turtle T = new Turtle(Item.vector2D(1, 0), Item.point2D(0, 0), null, 0);
 
     public static Turtle t() {
         return T;
@@ -15,9 +26,10 @@ public class Turtle {
     private final Item dir;   // Can be unit... doesn't need to be.
     private final Item pos;
 
-    private final Matrix mat;
+    private final Path path;
+    private final int length;
 
-    Turtle(Item d, Item p, Matrix m) {
+    private Turtle(Item d, Item p, Path path, int length) {
         if (!d.is2DVector() || !p.is2DPoint()) {
             throw new IllegalArgumentException("Turtle requires 2D vector!");
         }
@@ -25,7 +37,8 @@ public class Turtle {
         pos = p;
         dir = d;
 
-        mat = m;
+        this.path = path;
+        this.length = length;
     }
 
     public Turtle move(double s) {
@@ -34,25 +47,31 @@ public class Turtle {
         return new Turtle(
                 dir,
                 p1,
-                mat
+                path,
+                length
         );
     }
 
     public Turtle forward(double s) {
         Item p1 = pos.plus(dir.times(s));
 
+        Path p = path == null ? new Path() : path;
+        p = p.append(length, pos, p1);
+
         return new Turtle(
                 dir,
                 p1,
-                mat == null ? pos.asMatrix().concat(p1) : mat.concat(pos).concat(p1)
+                p,
+                length + 6
         );
     }
 
     public Turtle rotate(double theta) {
         return new Turtle(
-                dir.times(i(3).rotate2D(theta)),
+                dir.times(Affine2D.rotation(theta)),
                 pos,
-                mat
+                path,
+                length
         );
     }
 
@@ -60,15 +79,77 @@ public class Turtle {
         return new Turtle(
                 dir.times(s),
                 pos,
-                mat
+                path,
+                length
         );
     }
 
+    // Segments drawn so far, two rows each.
+    public int segments() {
+        return length / 6;
+    }
+
     public void draw2D() {
-        mat.draw2D();
+        if (path == null) {
+            return;
+        }
+
+        double[] data = path.data;
+
+        for (int i = 0; i < length; i += 3) {
+            glVertex2d(data[i], data[i + 1]);
+        }
     }
 
+    // The segments drawn so far as one Matrix, null if none.
     public Matrix image() {
-        return mat;
+        return path == null ? null : new Matrix(length / 3, 3, Arrays.copyOf(path.data, length));
+    }
+
+    /**
+     * Append only storage for segments, 3 values per row.
+     */
+    private static class Path {
+        private double[] data;
+        private int size;
+
+        private Path() {
+            data = new double[6 * 16];
+        }
+
+        // Appends segment a to b for a turtle which sees length values.
+        // Returns this if that turtle was at the tip, otherwise a new Path.
+        private synchronized Path append(int length, Item a, Item b) {
+            Path p = this;
+
+            if (length != size) {
+                p = new Path();
+                p.data = Arrays.copyOf(data, Math.max(length * 2, 6 * 16));
+                p.size = length;
+            }
+
+            p.put(a, b);
+
+            return p;
+        }
+
+        private void put(Item a, Item b) {
+            if (size + 6 > data.length) {
+                if (data.length > Integer.MAX_VALUE / 2) {
+                    throw new IllegalArgumentException("Turtle path is too large!");
+                }
+
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+
+            data[size] = a.val(0);
+            data[size + 1] = a.val(1);
+            data[size + 2] = a.val(2);
+            data[size + 3] = b.val(0);
+            data[size + 4] = b.val(1);
+            data[size + 5] = b.val(2);
+
+            size += 6;
+        }
     }
 }
@@ -1,52 +1,224 @@
 package math;
 
+import java.util.Arrays;
+
 public class Util {
 
     // Error to use.
     static final double EPS = 1e-6;
 
+    // Relative error to use for single precision values.
+    // A float only resolves EPS for magnitudes below about 8,
+    // past that we allow a few float ulps instead.
+    static final double FLOAT_EPS = 4 * Math.ulp(1.0f);
+
+    // The one singularity test, shared by LU and the closed form inverses.
+    // Solutions are meaningless once 1 / condition falls below the double epsilon.
+    static boolean isSingular(double condition) {
+        return !(1.0 / condition >= Math.ulp(1.0));
+    }
+
+    // Max column sum of an n x n matrix.
+    static double norm1(double[] m, int n) {
+        double max = 0;
+
+        for (int c = 0; c < n; c++) {
+            double sum = 0;
+
+            for (int r = 0; r < n; r++) {
+                sum += Math.abs(m[(r * n) + c]);
+            }
+
+            max = Math.max(max, sum);
+        }
+
+        return max;
+    }
+
+    static boolean floatEquals(double a, double b) {
+        double diff = Math.abs(a - b);
+        return diff <= EPS || diff <= FLOAT_EPS * Math.max(Math.abs(a), Math.abs(b));
+    }
+
     // NOTE, below, and everywhere in this package,
     // We shall assume all Matrices/Items are non-null and non-empty.
-    // Additionally, for Matrices, we will assume they are rectangular.
-    // i.e. every inner array must have the same length.
+    // Additionally, for Matrices, we will assume the flat array holds exactly rows * cols values.
     // If these assumptions are not true for given inputs, behavior is undefined.
 
-    static double[] mult(double[] vals, double[][] mat) {
-        if (mat.length != vals.length) {
+    // Matrices are stored flat, row major.
+    // A (rows x cols) matrix m holds entry (r, c) at m[(r * cols) + c].
+
+    static double[] mult(double[] vals, double[] mat, int rows, int cols) {
+        if (rows != vals.length) {
             throw new IllegalArgumentException("Bad dimensions for multiplication.");
         }
 
-        double[] newVals = new double[mat[0].length];
+        double[] newVals = new double[cols];
 
-        for (int c = 0; c < mat[0].length; c++) {
-            newVals[c] = 0;
+        for (int r = 0, i = 0; r < rows; r++) {
+            double v = vals[r];
 
-            for (int r = 0; r < mat.length; r++) {
-                newVals[c] += vals[r] * mat[r][c];
+            for (int c = 0; c < cols; c++, i++) {
+                newVals[c] += v * mat[i];
             }
         }
 
         return newVals;
     }
 
-    static double[][] mult(double[][] mat1, double[][] mat2) {
-        if (mat1[0].length != mat2.length) {
+    static double[] mult(double[] mat1, int rows1, int cols1, double[] mat2, int rows2, int cols2) {
+        if (cols1 != rows2) {
             throw new IllegalArgumentException("Bad dimensions for multiplication.");
         }
 
         // (A x B) * (B x C) -> (A x C)
-        double[][] newMat = new double[mat1.length][mat2[0].length];
+        double[] newMat = new double[rows1 * cols2];
 
-        for (int r = 0; r < mat1.length; r++) {
-            for (int c = 0; c < mat2[0].length; c++) {
-                newMat[r][c] = 0;
+        for (int r = 0; r < rows1; r++) {
+            int rowStart = r * cols2;
 
-                for (int k = 0; k < mat1[0].length; k++) {
-                    newMat[r][c] += mat1[r][k] * mat2[k][c];
+            for (int k = 0; k < cols1; k++) {
+                double v = mat1[(r * cols1) + k];
+                int kStart = k * cols2;
+
+                for (int c = 0; c < cols2; c++) {
+                    newMat[rowStart + c] += v * mat2[kStart + c];
                 }
             }
         }
 
         return newMat;
     }
+
+    // Same as above, for the rows1 rows of mat1 starting at off1.
+    // Written into dst starting at dstOff, dst may not be mat1.
+    static void mult(double[] mat1, int off1, int rows1, int cols1, double[] mat2, int cols2,
+                     double[] dst, int dstOff) {
+        Arrays.fill(dst, dstOff, dstOff + (rows1 * cols2), 0);
+
+        for (int r = 0; r < rows1; r++) {
+            int rowStart = dstOff + (r * cols2);
+
+            for (int k = 0; k < cols1; k++) {
+                double v = mat1[off1 + (r * cols1) + k];
+                int kStart = k * cols2;
+
+                for (int c = 0; c < cols2; c++) {
+                    dst[rowStart + c] += v * mat2[kStart + c];
+                }
+            }
+        }
+    }
+
+    // Closed form determinants and inverses for small square matrices.
+    // m is row major. The inverses return null when the determinant is exactly 0.
+
+    static double det2(double[] m) {
+        return (m[0] * m[3]) - (m[1] * m[2]);
+    }
+
+    static double det3(double[] m) {
+        return (m[0] * ((m[4] * m[8]) - (m[5] * m[7])))
+                - (m[1] * ((m[3] * m[8]) - (m[5] * m[6])))
+                + (m[2] * ((m[3] * m[7]) - (m[4] * m[6])));
+    }
+
+    static double det4(double[] m) {
+        double s0 = (m[0] * m[5]) - (m[4] * m[1]);
+        double s1 = (m[0] * m[6]) - (m[4] * m[2]);
+        double s2 = (m[0] * m[7]) - (m[4] * m[3]);
+        double s3 = (m[1] * m[6]) - (m[5] * m[2]);
+        double s4 = (m[1] * m[7]) - (m[5] * m[3]);
+        double s5 = (m[2] * m[7]) - (m[6] * m[3]);
+
+        double c5 = (m[10] * m[15]) - (m[14] * m[11]);
+        double c4 = (m[9] * m[15]) - (m[13] * m[11]);
+        double c3 = (m[9] * m[14]) - (m[13] * m[10]);
+        double c2 = (m[8] * m[15]) - (m[12] * m[11]);
+        double c1 = (m[8] * m[14]) - (m[12] * m[10]);
+        double c0 = (m[8] * m[13]) - (m[12] * m[9]);
+
+        return (s0 * c5) - (s1 * c4) + (s2 * c3) + (s3 * c2) - (s4 * c1) + (s5 * c0);
+    }
+
+    static double[] inverse2(double[] m) {
+        double det = det2(m);
+
+        if (det == 0) {
+            return null;
+        }
+
+        double inv = 1.0 / det;
+
+        return new double[] {
+                m[3] * inv, -m[1] * inv,
+                -m[2] * inv, m[0] * inv
+        };
+    }
+
+    static double[] inverse3(double[] m) {
+        double c0 = (m[4] * m[8]) - (m[5] * m[7]);
+        double c1 = (m[3] * m[8]) - (m[5] * m[6]);
+        double c2 = (m[3] * m[7]) - (m[4] * m[6]);
+
+        double det = (m[0] * c0) - (m[1] * c1) + (m[2] * c2);
+
+        if (det == 0) {
+            return null;
+        }
+
+        double inv = 1.0 / det;
+
+        return new double[] {
+                c0 * inv, -((m[1] * m[8]) - (m[2] * m[7])) * inv, ((m[1] * m[5]) - (m[2] * m[4])) * inv,
+                -c1 * inv, ((m[0] * m[8]) - (m[2] * m[6])) * inv, -((m[0] * m[5]) - (m[2] * m[3])) * inv,
+                c2 * inv, -((m[0] * m[7]) - (m[1] * m[6])) * inv, ((m[0] * m[4]) - (m[1] * m[3])) * inv
+        };
+    }
+
+    static double[] inverse4(double[] m) {
+        double s0 = (m[0] * m[5]) - (m[4] * m[1]);
+        double s1 = (m[0] * m[6]) - (m[4] * m[2]);
+        double s2 = (m[0] * m[7]) - (m[4] * m[3]);
+        double s3 = (m[1] * m[6]) - (m[5] * m[2]);
+        double s4 = (m[1] * m[7]) - (m[5] * m[3]);
+        double s5 = (m[2] * m[7]) - (m[6] * m[3]);
+
+        double c5 = (m[10] * m[15]) - (m[14] * m[11]);
+        double c4 = (m[9] * m[15]) - (m[13] * m[11]);
+        double c3 = (m[9] * m[14]) - (m[13] * m[10]);
+        double c2 = (m[8] * m[15]) - (m[12] * m[11]);
+        double c1 = (m[8] * m[14]) - (m[12] * m[10]);
+        double c0 = (m[8] * m[13]) - (m[12] * m[9]);
+
+        double det = (s0 * c5) - (s1 * c4) + (s2 * c3) + (s3 * c2) - (s4 * c1) + (s5 * c0);
+
+        if (det == 0) {
+            return null;
+        }
+
+        double inv = 1.0 / det;
+
+        return new double[] {
+                ((m[5] * c5) - (m[6] * c4) + (m[7] * c3)) * inv,
+                ((-m[1] * c5) + (m[2] * c4) - (m[3] * c3)) * inv,
+                ((m[13] * s5) - (m[14] * s4) + (m[15] * s3)) * inv,
+                ((-m[9] * s5) + (m[10] * s4) - (m[11] * s3)) * inv,
+
+                ((-m[4] * c5) + (m[6] * c2) - (m[7] * c1)) * inv,
+                ((m[0] * c5) - (m[2] * c2) + (m[3] * c1)) * inv,
+                ((-m[12] * s5) + (m[14] * s2) - (m[15] * s1)) * inv,
+                ((m[8] * s5) - (m[10] * s2) + (m[11] * s1)) * inv,
+
+                ((m[4] * c4) - (m[5] * c2) + (m[7] * c0)) * inv,
+                ((-m[0] * c4) + (m[1] * c2) - (m[3] * c0)) * inv,
+                ((m[12] * s4) - (m[13] * s2) + (m[15] * s0)) * inv,
+                ((-m[8] * s4) + (m[9] * s2) - (m[11] * s0)) * inv,
+
+                ((-m[4] * c3) + (m[5] * c1) - (m[6] * c0)) * inv,
+                ((m[0] * c3) - (m[1] * c1) + (m[2] * c0)) * inv,
+                ((-m[12] * s3) + (m[13] * s1) - (m[14] * s0)) * inv,
+                ((m[8] * s3) - (m[9] * s1) + (m[10] * s0)) * inv
+        };
+    }
 }
@@ -0,0 +1,36 @@
+package math;
+
+/**
+ * SIMD versions of the bulk kernels in PointKernel and Matrix.
+ *
+ * This is the Java 8 version, it is never available, and its entry points run the scalar code.
+ * On Java 17+ the multi-release jar replaces this class with one
+ * built on jdk.incubator.vector (see src/main/java17).
+ * That version is only available when the JVM runs with
+ * --add-modules jdk.incubator.vector, and -Dmath.vector=false is not set.
+ *
+ * Results must be bit for bit equal to the scalar code.
+ */
+final class VectorKernel {
+    // Smaller batches are not worth the setup.
+    static final int MIN_POINTS = 64;
+
+    private VectorKernel() {
+
+    }
+
+    // NOTE, a method, not a constant, so callers are not compiled against this value.
+    static boolean available() {
+        return false;
+    }
+
+    static void transform(double[] src, int srcOff, double[] dst, int dstOff, int points, Affine2D t) {
+        PointKernel.transformScalar(src, srcOff, dst, dstOff, points, t);
+    }
+
+    static void scale(double[] src, double[] dst, double s) {
+        for (int i = 0; i < src.length; i++) {
+            dst[i] = src[i] * s;
+        }
+    }
+}
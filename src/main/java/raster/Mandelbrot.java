@@ -0,0 +1,119 @@
+package raster;
+
+import math.Item;
+
+import static math.Matrix.i;
+
+/**
+ * Escape time coloring of the Mandelbrot set, on raw doubles.
+ *
+ * z starts at c and is checked before each step, so a point escaping on step i gets
+ * palette[i]. The palette is built once per iteration count, with the same Item and Matrix
+ * arithmetic Runner colored with per pixel, so the colors are unchanged.
+ *
+ * Interior points, which would run all iterations, are cut short:
+ * * The main cardioid and the period 2 bulb are tested in closed form.
+ * * Orbits are checked for an exact cycle against a saved z, saved again at power of two
+ *   steps (Brent). A repeated z repeats forever, so the point is inside.
+ * Neither changes a color, they only skip iterations whose outcome is already known.
+ *
+ * The set is symmetric about the real axis, so Raster copies mirrored rows instead.
+ */
+public final class Mandelbrot implements Raster.PixelFunction {
+    private static final int BLACK = Raster.argb(0, 0, 0);
+
+    private final int iterations;
+    private final int[] palette;
+
+    public Mandelbrot(int iterations) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("Iterations cannot be negative!");
+        }
+
+        this.iterations = iterations;
+
+        palette = new int[iterations];
+
+        for (int i = 0; i < iterations; i++) {
+            double t = (iterations - (i + 1.0)) / iterations;
+
+            Item color = Item.item2D(t, Math.pow(t, 2.0), 1.0)
+                    .times(i(3).rotate2D(i * Math.PI / 12.0).shift2D(1.0, 1.0).scale2D(.5));
+
+            palette[i] = Raster.argb(color.val(0), color.val(1), color.val(2));
+        }
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    @Override
+    public int color(double cx, double cy) {
+        int i = escape(cx, cy);
+
+        return i < 0 ? BLACK : palette[i];
+    }
+
+    // Step on which c escapes, -1 if it does not within iterations.
+    public int escape(double cx, double cy) {
+        if (iterations == 0) {
+            return -1;
+        }
+
+        double yy = cy * cy;
+
+        // Main cardioid.
+        double qx = cx - .25;
+        double q = (qx * qx) + yy;
+
+        if (q * (q + qx) < .25 * yy) {
+            return -1;
+        }
+
+        // Period 2 bulb, the disc of radius 1/4 around -1.
+        double bx = cx + 1;
+
+        if ((bx * bx) + yy < .0625) {
+            return -1;
+        }
+
+        double x = cx;
+        double y = cy;
+
+        double sx = x;
+        double sy = y;
+        int saved = 0;
+        int period = 1;
+
+        for (int i = 0; i < iterations; i++) {
+            double xx = x * x;
+            yy = y * y;
+
+            if (xx + yy > 4) {
+                return i;
+            }
+
+            y = (2.0 * x * y) + cy;
+            x = (xx - yy) + cx;
+
+            if (x == sx && y == sy) {
+                return -1;
+            }
+
+            if (++saved == period) {
+                sx = x;
+                sy = y;
+                saved = 0;
+                period *= 2;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public boolean symmetric() {
+        return true;
+    }
+}
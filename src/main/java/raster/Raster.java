@@ -1,18 +1,11 @@
 package raster;
 
 import java.math.BigDecimal;
-import java.util.function.BiFunction;
+import java.math.MathContext;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import org.lwjgl.*;
-import org.lwjgl.glfw.*;
-import org.lwjgl.opengl.*;
-import org.lwjgl.system.*;
-
-import static org.lwjgl.glfw.Callbacks.*;
 import static org.lwjgl.glfw.GLFW.*;
-import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.system.MemoryStack.*;
-import static org.lwjgl.system.MemoryUtil.*;
 
 /**
  * Class for running a function on all pixels of the screen.
@@ -21,9 +14,53 @@ import static org.lwjgl.system.MemoryUtil.*;
  * * High-Speed panning.
  * * Multithreading.
  *
- * This uses current OpenGL window... NOT FUNCTIONAL!
+ * The viewport is cut into TILE x TILE pixel tiles, rendered as ForkJoinPool tasks.
+ * Tasks split the tile range in halves, so idle threads steal the remaining work.
+ *
+ * Pixels are packed ARGB ints in one array, row r starting at r * stride.
+ * Row 0 is the bottom of the viewport, as in GL.
+ * stride is the width rounded up to a whole number of 64 byte cache lines, and tiles are
+ * a whole number of lines wide, so threads on neighbouring tiles rarely write the same line.
+ * The array only grows, resizePixels reuses it when the new size fits.
+ *
+ * pan moves the view by whole pixels. The retained pixels are shifted in place and only
+ * the exposed strips are evaluated. Pixel (c, r) is always evaluated at
+ * anchor + step * (c + panned pixels), so retained and fresh pixels line up exactly,
+ * and the BigDecimal center follows without drift.
+ *
+ * refine renders progressively. The first pass evaluates one pixel in each COARSE x COARSE
+ * block and fills the block with it. Each later pass halves the block, evaluating only the
+ * pixels no earlier pass sampled, until every pixel holds its own sample. So the final image
+ * is the full render, and every pixel is still evaluated once.
+ *
+ * When y = 0 is on screen on a row, or midway between two, rows are counted from y = 0 rather
+ * than from the corner, so rows r and k - r mirrored about it get exactly negated y.
+ * A symmetric function has color(x, -y) == color(x, y), so for one render and refine evaluate
+ * only one side and copy the mirrored rows onto the other, which is exactly the same image.
  */
 public class Raster {
+    /**
+     * Color of the point (x, y) in viewport coordinates, as ARGB.
+     * Called from many threads at once.
+     */
+    public interface PixelFunction {
+        int color(double x, double y);
+
+        // Whether color(x, -y) == color(x, y), so mirrored rows may be copied.
+        default boolean symmetric() {
+            return false;
+        }
+    }
+
+    // Tile side in pixels.
+    public static final int TILE = 64;
+
+    // Block side of the first refine pass, divides TILE.
+    public static final int COARSE = 4;
+
+    // Ints per 64 byte cache line.
+    private static final int LINE = 16;
+
     private final long window;
 
     private BigDecimal x;
@@ -31,9 +68,31 @@ public class Raster {
 
     private BigDecimal stepSize;
 
-    // Starts at top right corner.
-    // pixels[r][c * 3] ... columns are expanded to hold rgb values.
-    private float[][] pixels;
+    private int width;
+    private int height;
+    private int stride;
+    private int[] pixels;
+
+    // Corner of the last full render, and pixels panned since.
+    // Row r is at anchorY + step * (rowOrigin + panR + r).
+    private double anchorX;
+    private double anchorY;
+    private double rowOrigin;
+    private long panC;
+    private long panR;
+
+    // Rows r and mirror - r of the last full render are mirrored about y = 0, -1 if none are.
+    private int mirror;
+
+    // Whether the framebuffer holds the current view.
+    private boolean valid;
+
+    // Block side of the next refine pass, 0 if none is under way.
+    private int block;
+
+    private long lastNanos;
+    private int lastTiles;
+    private long lastPixels;
 
     public Raster(long wind) {
         window = wind;
@@ -46,20 +105,470 @@ public class Raster {
         resizePixels();
     }
 
+    // Not tied to a window, for offscreen rendering.
+    public Raster(int width, int height) {
+        window = 0;
+
+        x = BigDecimal.ZERO;
+        y = BigDecimal.ZERO;
+
+        stepSize = new BigDecimal("0.01");
+
+        resizePixels(width, height);
+    }
+
     public void resizePixels() {
         int[] width = new int[1];
         int[] height = new int[1];
 
         glfwGetWindowSize(window, width, height);
 
-        pixels = new float[height[0]][width[0] * 3];
+        resizePixels(width[0], height[0]);
+    }
+
+    public void resizePixels(int w, int h) {
+        if (w < 0 || h < 0) {
+            throw new IllegalArgumentException("Raster size cannot be negative!");
+        }
+
+        int s = ((w + LINE - 1) / LINE) * LINE;
+
+        if ((long) s * h > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Raster is too large!");
+        }
+
+        if (pixels == null || pixels.length < s * h) {
+            pixels = new int[s * h];
+        }
+
+        if (w != width || h != height) {
+            invalidate();
+        }
+
+        width = w;
+        height = h;
+        stride = s;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    // Ints from one row to the next.
+    public int stride() {
+        return stride;
+    }
+
+    // The framebuffer itself, rows of stride ints. Valid until the next resizePixels.
+    public int[] pixels() {
+        return pixels;
+    }
+
+    public int pixel(int c, int r) {
+        return pixels[(r * stride) + c];
+    }
+
+    public BigDecimal x() {
+        return x;
+    }
+
+    public BigDecimal y() {
+        return y;
+    }
+
+    public BigDecimal stepSize() {
+        return stepSize;
+    }
+
+    // Viewport center.
+    public void center(BigDecimal x, BigDecimal y) {
+        this.x = x;
+        this.y = y;
+
+        invalidate();
+    }
+
+    // Viewport units per pixel.
+    public void stepSize(BigDecimal s) {
+        if (s.signum() <= 0) {
+            throw new IllegalArgumentException("Step size must be positive!");
+        }
+
+        if (s.compareTo(stepSize) != 0) {
+            invalidate();
+        }
+
+        stepSize = s;
+    }
+
+    // Viewport x of column 0, exact before the final rounding to double.
+    public double cornerX() {
+        return corner(x, width);
+    }
+
+    public double cornerY() {
+        return corner(y, height);
+    }
+
+    private double corner(BigDecimal center, int pixels) {
+        return center.subtract(stepSize.multiply(BigDecimal.valueOf(pixels / 2.0)), MathContext.DECIMAL128)
+                .doubleValue();
+    }
+
+    // Pixel (c, r) gets f at (cornerX + c * step, cornerY + r * step), up to rounding.
+    public void render(PixelFunction f) {
+        render(f, ForkJoinPool.commonPool());
+    }
+
+    public void render(PixelFunction f, ForkJoinPool pool) {
+        long start = System.nanoTime();
+
+        anchor();
+
+        lastTiles = 0;
+        lastPixels = 0;
+        frame(f, pool, 1, false);
+
+        valid = true;
+        block = 0;
+        lastNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Moves the view dc pixels right and dr pixels up, f must be the function of the last render.
+     * Only the exposed strips are evaluated, unless the view changed since the last render
+     * or the pan is a whole screen, which render in full.
+     */
+    public void pan(int dc, int dr, PixelFunction f) {
+        pan(dc, dr, f, ForkJoinPool.commonPool());
+    }
+
+    public void pan(int dc, int dr, PixelFunction f, ForkJoinPool pool) {
+        if (!valid || Math.abs(dc) >= width || Math.abs(dr) >= height) {
+            move(dc, dr);
+            render(f, pool);
+            return;
+        }
+
+        x = x.add(stepSize.multiply(BigDecimal.valueOf(dc)));
+        y = y.add(stepSize.multiply(BigDecimal.valueOf(dr)));
+
+        long start = System.nanoTime();
+
+        shift(dc, dr);
+        panC += dc;
+        panR += dr;
+
+        lastTiles = 0;
+        lastPixels = 0;
+
+        // Rows first, then columns of the rows kept.
+        if (dr > 0) {
+            region(f, pool, 0, height - dr, width, height, 1, false);
+        } else if (dr < 0) {
+            region(f, pool, 0, 0, width, -dr, 1, false);
+        }
+
+        int r0 = Math.max(-dr, 0);
+        int r1 = height - Math.max(dr, 0);
+
+        if (dc > 0) {
+            region(f, pool, width - dc, r0, width, r1, 1, false);
+        } else if (dc < 0) {
+            region(f, pool, 0, r0, -dc, r1, 1, false);
+        }
+
+        lastNanos = System.nanoTime() - start;
+    }
+
+    // Moves the view dc pixels right and dr pixels up without drawing, the pixels go stale.
+    public void move(int dc, int dr) {
+        center(x.add(stepSize.multiply(BigDecimal.valueOf(dc))), y.add(stepSize.multiply(BigDecimal.valueOf(dr))));
+    }
+
+    // Marks the pixels stale, e.g. when the function changed. The next refine starts over.
+    public void invalidate() {
+        valid = false;
+        block = 0;
+    }
+
+    // Whether the pixels are the full render of the current view.
+    public boolean complete() {
+        return valid;
+    }
+
+    /**
+     * Runs the next progressive pass of f, starting over if the view changed.
+     * Returns whether more passes remain, f must not change between them.
+     */
+    public boolean refine(PixelFunction f) {
+        return refine(f, ForkJoinPool.commonPool());
+    }
+
+    public boolean refine(PixelFunction f, ForkJoinPool pool) {
+        if (valid) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+
+        if (block == 0) {
+            anchor();
+
+            block = COARSE;
+        }
+
+        lastTiles = 0;
+        lastPixels = 0;
+        frame(f, pool, block, block < COARSE);
+
+        block /= 2;
+        valid = block == 0;
+
+        lastNanos = System.nanoTime() - start;
+
+        return !valid;
+    }
+
+    // Moves pixel (c + dc, r + dr) to (c, r), where both are on screen.
+    private void shift(int dc, int dr) {
+        int n = width - Math.abs(dc);
+        int from = Math.max(dc, 0);
+        int to = Math.max(-dc, 0);
+
+        // Rows move towards dr, copy in the order that reads a row before it is written.
+        if (dr >= 0) {
+            for (int r = 0; r < height - dr; r++) {
+                System.arraycopy(pixels, ((r + dr) * stride) + from, pixels, (r * stride) + to, n);
+            }
+        } else {
+            for (int r = height - 1; r >= -dr; r--) {
+                System.arraycopy(pixels, ((r + dr) * stride) + from, pixels, (r * stride) + to, n);
+            }
+        }
+    }
+
+    // Pixel coordinates for a fresh render of the current view.
+    private void anchor() {
+        mirror = mirror();
+
+        anchorX = cornerX();
+        anchorY = mirror < 0 ? cornerY() : 0;
+        rowOrigin = mirror < 0 ? 0 : -mirror / 2.0;
+        panC = 0;
+        panR = 0;
+    }
+
+    // k such that rows r and k - r are mirrored about y = 0, for 0 < k < 2 * height.
+    // -1 if there is none.
+    private int mirror() {
+        BigDecimal corner = y.subtract(stepSize.multiply(BigDecimal.valueOf(height / 2.0)));
+        BigDecimal[] k = corner.multiply(BigDecimal.valueOf(-2)).divideAndRemainder(stepSize);
+
+        if (k[1].signum() != 0 || k[0].signum() <= 0 || k[0].compareTo(BigDecimal.valueOf(2L * height)) >= 0) {
+            return -1;
+        }
+
+        return k[0].intValueExact();
+    }
+
+    // A whole frame pass, only one side of y = 0 if f is symmetric and the rows line up.
+    // Sample rows mirror each other when the mirror is a multiple of the pass's grid.
+    private void frame(PixelFunction f, ForkJoinPool pool, int block, boolean skip) {
+        int grid = skip ? 2 * block : block;
+        int k = f.symmetric() && mirror > 0 && mirror % grid == 0 ? mirror : -1;
+
+        if (k < 0) {
+            region(f, pool, 0, 0, width, height, block, skip);
+            return;
+        }
+
+        // Sample rows r below y = 0 whose mirror k - r is on screen, with their blocks.
+        int lo = ((Math.max(0, (k - height) + 1) + block - 1) / block) * block;
+        int hi = Math.min(height, ((((k - 1) / 2) / block) * block) + block);
+
+        if (lo >= hi) {
+            region(f, pool, 0, 0, width, height, block, skip);
+            return;
+        }
+
+        region(f, pool, 0, 0, width, lo, block, skip);
+        region(f, pool, 0, hi, width, height, block, skip);
+
+        reflect(k, lo, hi, block, skip);
+    }
+
+    // Fills sample rows [lo, hi) from rows k - r, which are already done.
+    private void reflect(int k, int lo, int hi, int block, boolean skip) {
+        if (block == 1) {
+            // Samples of earlier passes are mirrored too, whole rows can go.
+            for (int r = lo; r < hi; r++) {
+                System.arraycopy(pixels, (k - r) * stride, pixels, r * stride, width);
+            }
+
+            return;
+        }
+
+        int grid = (2 * block) - 1;
+
+        for (int r = lo; r < hi; r += block) {
+            int src = (k - r) * stride;
+            boolean sampled = skip && (r & grid) == 0;
+
+            for (int c = 0; c < width; c += block) {
+                if (sampled && (c & grid) == 0) {
+                    continue;
+                }
+
+                int v = pixels[src + c];
+
+                for (int rr = r; rr < Math.min(r + block, hi); rr++) {
+                    int o = rr * stride;
+
+                    for (int cc = c; cc < Math.min(c + block, width); cc++) {
+                        pixels[o + cc] = v;
+                    }
+                }
+            }
+        }
+    }
+
+    // Evaluates [c0, c1) x [r0, r1) in tiles, one pixel per block x block block.
+    // With skip, blocks on the grid of the previous pass are already sampled.
+    private void region(PixelFunction f, ForkJoinPool pool, int c0, int r0, int c1, int r1, int block, boolean skip) {
+        int tilesX = (c1 - c0 + TILE - 1) / TILE;
+        int tilesY = (r1 - r0 + TILE - 1) / TILE;
+
+        if (tilesX * tilesY > 0) {
+            pool.invoke(new Tiles(f, c0, r0, c1, r1, tilesX, block, skip, 0, tilesX * tilesY));
+        }
+
+        lastTiles += tilesX * tilesY;
+        lastPixels += (long) multiples(c0, c1, block) * multiples(r0, r1, block);
+
+        if (skip) {
+            lastPixels -= (long) multiples(c0, c1, 2 * block) * multiples(r0, r1, 2 * block);
+        }
+    }
+
+    // Multiples of m in [lo, hi), for lo >= 0.
+    private static int multiples(int lo, int hi, int m) {
+        return hi <= lo ? 0 : ((hi + m - 1) / m) - ((lo + m - 1) / m);
+    }
+
+    // Tiles, pixels evaluated and time of the last render or pan.
+    public int lastTiles() {
+        return lastTiles;
+    }
+
+    public long lastPixels() {
+        return lastPixels;
+    }
+
+    public long lastNanos() {
+        return lastNanos;
+    }
+
+    // Packs [0, 1] color channels, out of range values are clamped.
+    public static int argb(double r, double g, double b) {
+        return 0xFF000000 | (channel(r) << 16) | (channel(g) << 8) | channel(b);
+    }
+
+    private static int channel(double v) {
+        return v <= 0 ? 0 : v >= 1 ? 255 : (int) ((v * 255) + .5);
+    }
+
+    /**
+     * Renders tiles [lo, hi) of a region, numbered row major.
+     */
+    @SuppressWarnings("serial")
+    private class Tiles extends RecursiveAction {
+        private final PixelFunction f;
+        private final int c0;
+        private final int r0;
+        private final int c1;
+        private final int r1;
+        private final int tilesX;
+        private final int block;
+        private final boolean skip;
+
+        private final int lo;
+        private final int hi;
+
+        private Tiles(PixelFunction f, int c0, int r0, int c1, int r1, int tilesX, int block, boolean skip,
+                      int lo, int hi) {
+            this.f = f;
+            this.c0 = c0;
+            this.r0 = r0;
+            this.c1 = c1;
+            this.r1 = r1;
+            this.tilesX = tilesX;
+            this.block = block;
+            this.skip = skip;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = lo + ((hi - lo) / 2);
+
+                invokeAll(
+                        new Tiles(f, c0, r0, c1, r1, tilesX, block, skip, lo, mid),
+                        new Tiles(f, c0, r0, c1, r1, tilesX, block, skip, mid, hi)
+                );
+
+                return;
+            }
+
+            double step = stepSize.doubleValue();
+
+            int tc0 = c0 + ((lo % tilesX) * TILE);
+            int tr0 = r0 + ((lo / tilesX) * TILE);
+            int tc1 = Math.min(tc0 + TILE, c1);
+            int tr1 = Math.min(tr0 + TILE, r1);
+
+            if (block == 1 && !skip) {
+                for (int r = tr0; r < tr1; r++) {
+                    double yp = anchorY + (step * (rowOrigin + panR + r));
+                    int o = r * stride;
+
+                    for (int c = tc0; c < tc1; c++) {
+                        pixels[o + c] = f.color(anchorX + (step * (panC + c)), yp);
+                    }
+                }
+
+                return;
+            }
+
+            // Tiles start on the block grid, as TILE is a multiple of COARSE.
+            int grid = (2 * block) - 1;
+
+            for (int r = tr0; r < tr1; r += block) {
+                double yp = anchorY + (step * (rowOrigin + panR + r));
+                boolean sampled = skip && (r & grid) == 0;
+
+                for (int c = tc0; c < tc1; c += block) {
+                    if (sampled && (c & grid) == 0) {
+                        continue;
+                    }
+
+                    int v = f.color(anchorX + (step * (panC + c)), yp);
+
+                    for (int rr = r; rr < Math.min(r + block, tr1); rr++) {
+                        int o = rr * stride;
+
+                        for (int cc = c; cc < Math.min(c + block, tc1); cc++) {
+                            pixels[o + cc] = v;
+                        }
+                    }
+                }
+            }
+        }
     }
-//
-//    public void raster() {
-//
-//    }
-//
-//    public void raster() {
-//
-//    }
 }
@@ -0,0 +1,149 @@
+package raster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.*;
+
+/**
+ * Shows a Raster's framebuffer as one textured quad over GL's default [-1, 1] view.
+ *
+ * Each present is one glTexSubImage2D of the whole buffer, whatever it holds.
+ * The packed ARGB ints go up as GL_BGRA / GL_UNSIGNED_INT_8_8_8_8_REV, which is the
+ * layout of the ints themselves, so the driver does not convert them. Row padding is
+ * skipped with GL_UNPACK_ROW_LENGTH.
+ *
+ * Without a pixel buffer object, pixels are copied to a direct IntBuffer and uploaded from there.
+ * With one, they are copied into the mapped buffer, which is orphaned every frame, so GL can
+ * finish the transfer to the texture asynchronously.
+ *
+ * Needs a current GL context, and must be closed on the GL thread.
+ */
+public class RasterTexture implements AutoCloseable {
+    private final boolean pbo;
+
+    private final int texture;
+    private final int buffer;
+
+    // Texture size.
+    private int width;
+    private int height;
+
+    // Staging buffer without a PBO.
+    private IntBuffer upload;
+
+    private boolean closed;
+
+    public RasterTexture(boolean pbo) {
+        this.pbo = pbo;
+
+        texture = glGenTextures();
+        buffer = pbo ? glGenBuffers() : 0;
+
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    public void present(Raster raster) {
+        if (closed) {
+            throw new IllegalStateException("RasterTexture is closed!");
+        }
+
+        int w = raster.width();
+        int h = raster.height();
+
+        if (w == 0 || h == 0) {
+            return;
+        }
+
+        int size = raster.stride() * h;
+
+        glBindTexture(GL_TEXTURE_2D, texture);
+
+        if (w != width || h != height) {
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, w, h, 0, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, (IntBuffer) null);
+            width = w;
+            height = h;
+        }
+
+        glPixelStorei(GL_UNPACK_ROW_LENGTH, raster.stride());
+
+        if (pbo) {
+            glBindBuffer(GL_PIXEL_UNPACK_BUFFER, buffer);
+
+            // Orphan last frame's storage, GL may still be reading it.
+            glBufferData(GL_PIXEL_UNPACK_BUFFER, (long) size * Integer.BYTES, GL_STREAM_DRAW);
+
+            ByteBuffer mapped = glMapBuffer(GL_PIXEL_UNPACK_BUFFER, GL_WRITE_ONLY);
+
+            if (mapped == null) {
+                glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+                throw new IllegalStateException("Unable to map pixel buffer!");
+            }
+
+            mapped.order(ByteOrder.nativeOrder()).asIntBuffer().put(raster.pixels(), 0, size);
+            glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+
+            // Offset 0 into the bound buffer.
+            glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, w, h, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, 0L);
+            glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        } else {
+            if (upload == null || upload.capacity() < size) {
+                upload = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+
+            upload.clear();
+            upload.put(raster.pixels(), 0, size).flip();
+
+            glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, w, h, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, upload);
+        }
+
+        glPixelStorei(GL_UNPACK_ROW_LENGTH, 0);
+
+        glPushMatrix();
+        glLoadIdentity();
+
+        // Row 0 is the bottom, like the texture.
+        glEnable(GL_TEXTURE_2D);
+        glColor3d(1, 1, 1);
+        glBegin(GL_QUADS);
+        glTexCoord2d(0, 0);
+        glVertex2d(-1, -1);
+        glTexCoord2d(1, 0);
+        glVertex2d(1, -1);
+        glTexCoord2d(1, 1);
+        glVertex2d(1, 1);
+        glTexCoord2d(0, 1);
+        glVertex2d(-1, 1);
+        glEnd();
+        glDisable(GL_TEXTURE_2D);
+
+        glPopMatrix();
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        glDeleteTextures(texture);
+
+        if (pbo) {
+            glDeleteBuffers(buffer);
+        }
+
+        upload = null;
+    }
+}
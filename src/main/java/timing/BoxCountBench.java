@@ -0,0 +1,41 @@
+package timing;
+
+import math.BoundingBall;
+import math.BoxCounter;
+import math.ChaosGame;
+import math.IFS;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Box counting dimension of the pulse curves, and points per second into the counter.
+ *
+ * Usage: BoxCountBench [points] [levels]
+ * Defaults to 2^24 points on a 2^12 grid. Compares the curves of the
+ * comparison block in Runner.render(), trianglePulse and trianglePulseReduced at PI / 12.
+ */
+public class BoxCountBench {
+    public static void main(String[] args) {
+        long points = args.length > 0 ? Long.parseLong(args[0]) : 1L << 24;
+        int levels = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+
+        double theta = Math.PI / 12;
+        int parts = Runtime.getRuntime().availableProcessors();
+
+        IFS[] curves = {IFS.trianglePulse(theta), IFS.trianglePulseReduced(theta), IFS.quadPulse(Math.PI / 3)};
+        String[] names = {"trianglePulse", "trianglePulseReduced", "quadPulse"};
+
+        System.out.printf("%-22s %10s %8s %14s%n", "curve", "dimension", "r2", "Mpoints/s");
+
+        for (int i = 0; i < curves.length; i++) {
+            ChaosGame game = ChaosGame.of(curves[i]);
+            BoxCounter counter = BoxCounter.of(BoundingBall.of(curves[i]), levels);
+
+            double ms = Timer.time(() -> counter.addParallel(game, points, 1, parts, ForkJoinPool.commonPool()));
+            BoxCounter.Fit fit = counter.fit(2, levels - 2);
+
+            System.out.printf("%-22s %10.4f %8.4f %14.2f%n", names[i], fit.dimension(), fit.r2(),
+                    points / (ms * 1000));
+        }
+    }
+}
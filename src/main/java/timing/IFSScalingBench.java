@@ -0,0 +1,43 @@
+package timing;
+
+import math.IFS;
+import math.Matrix;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parallel IFS expansion time on 1 to N cores.
+ *
+ * Usage: IFSScalingBench [depth] [maxThreads]
+ * Expands quadPulse to depth (default 9, about 3.9M rows),
+ * with pools of 1 up to maxThreads (default all processors) threads.
+ */
+public class IFSScalingBench {
+    private static final int TRIALS = 5;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        IFS ifs = IFS.quadPulse(Math.PI / 3);
+        Matrix seed = Matrix.sprite2D(0, 0, 1, 0);
+
+        System.out.printf("%8s %12s %10s%n", "threads", "ms", "speedup");
+
+        double base = 0;
+
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+
+            ifs.iterate(depth, seed, pool);
+            double ms = Timer.time(TRIALS, () -> ifs.iterate(depth, seed, pool));
+
+            if (threads == 1) {
+                base = ms;
+            }
+
+            System.out.printf("%8d %12.2f %10.2f%n", threads, ms, base / ms);
+            pool.shutdown();
+        }
+    }
+}
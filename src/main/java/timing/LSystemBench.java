@@ -0,0 +1,58 @@
+package timing;
+
+import math.LSystem;
+import math.Turtle;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runner.kco as turtle recursion against the compiled LSystem, sequential and parallel.
+ *
+ * Usage: LSystemBench [maxLevel]
+ * Levels 4 up to maxLevel (default 11, about 4.2M segments). The turtle column stops
+ * at level 10, every one of its steps allocates Items and Turtles.
+ */
+public class LSystemBench {
+    private static final int TRIALS = 3;
+
+    // Runner.kco.
+    private static Turtle kco(Turtle turtle, int level) {
+        if (level == 0) {
+            return turtle.forward(1);
+        }
+
+        Turtle nt = turtle.scale(1.0 / 3.0);
+        nt = kco(nt, level - 1).rotate(Math.PI / 3.0);
+        nt = kco(nt, level - 1).rotate(- 2 * Math.PI / 3.0);
+        nt = kco(nt, level - 1).rotate(Math.PI / 3.0);
+        return kco(nt, level - 1).scale(3.0);
+    }
+
+    public static void main(String[] args) {
+        int maxLevel = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+
+        LSystem koch = LSystem.kco();
+        double[] sum = new double[1];
+        LSystem.SegmentSink sink = (x0, y0, x1, y1) -> sum[0] += x1 - x0;
+
+        // Warm up.
+        kco(Turtle.t(), 7);
+        koch.image(8);
+        koch.run(8, sink);
+
+        System.out.printf("%6s %12s %12s %12s %12s %12s%n",
+                "level", "segments", "turtle ms", "image ms", "stream ms", "parallel ms");
+
+        for (int level = 4; level <= maxLevel; level++) {
+            final int l = level;
+
+            double turtle = level <= 10 ? Timer.time(TRIALS, () -> kco(Turtle.t(), l)) : Double.NaN;
+            double image = Timer.time(TRIALS, () -> koch.image(l));
+            double stream = Timer.time(TRIALS, () -> koch.run(l, sink));
+            double parallel = Timer.time(TRIALS, () -> koch.image(l, ForkJoinPool.commonPool()));
+
+            System.out.printf("%6d %12d %12.2f %12.2f %12.2f %12.2f%n",
+                    level, koch.segments(level), turtle, image, stream, parallel);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package timing;
+
+import math.Item;
+import raster.Mandelbrot;
+import raster.Raster;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static math.Item.*;
+import static math.Matrix.*;
+
+/**
+ * Runner's Item based Mandelbrot coloring against the Mandelbrot kernel, in pixels per second.
+ *
+ * Usage: MandelbrotBench [size]
+ * Renders size x size (default 900, Runner's window) through Raster on the common pool.
+ * The kernel column has no mirroring, the mirror column copies rows about y = 0.
+ */
+public class MandelbrotBench {
+    private static final int TRIALS = 3;
+
+    // Runner.mandlebrotColor, as it was.
+    private static Item mandlebrotColor(Item c, int iterations) {
+        Item z = c;
+        for (int i = 0; i < iterations; i++) {
+            double x = z.val(0);
+            double y = z.val(1);
+
+            z = vector2Dp((x * x) - (y * y), 2.0 * x * y).plus(c);
+
+            if ((x * x) + (y * y) > 4) {
+                return item2D(
+                        (iterations - (i + 1.0)) / iterations,
+                        Math.pow((iterations - (i + 1.0)) / iterations, 2.0), 1.0)
+                        .times(i(3).rotate2D(i * Math.PI / 12.0).shift2D(1.0, 1.0).scale2D(.5));
+            }
+        }
+
+        return item2D(0, 0, 0);
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 900;
+
+        Raster raster = new Raster(size, size);
+
+        // Runner's start, and the whole set filling the window.
+        String[] names = {"runner", "set"};
+        BigDecimal[] centers = {BigDecimal.ZERO, new BigDecimal("-0.5")};
+        BigDecimal[] steps = {new BigDecimal("0.01"), new BigDecimal("3").divide(BigDecimal.valueOf(size), 20, RoundingMode.HALF_EVEN)};
+
+        System.out.printf("%8s %10s %12s %12s %12s %10s%n",
+                "view", "iterations", "item Mpx/s", "kernel Mpx/s", "mirror Mpx/s", "speedup");
+
+        for (int v = 0; v < names.length; v++) {
+            raster.center(centers[v], BigDecimal.ZERO);
+            raster.stepSize(steps[v]);
+
+            for (int iterations : new int[] {100, 1000}) {
+                final int n = iterations;
+                Mandelbrot m = new Mandelbrot(n);
+
+                Raster.PixelFunction item = (x, y) -> {
+                    Item color = mandlebrotColor(vector2Dp(x, y), n);
+                    return Raster.argb(color.val(0), color.val(1), color.val(2));
+                };
+                Raster.PixelFunction kernel = m::color;
+
+                // Warm up.
+                raster.render(item);
+                raster.render(kernel);
+                raster.render(m);
+
+                double itemMs = Timer.time(iterations > 100 ? 1 : TRIALS, () -> raster.render(item));
+                double kernelMs = Timer.time(TRIALS, () -> raster.render(kernel));
+                double mirrorMs = Timer.time(TRIALS, () -> raster.render(m));
+
+                double pixels = (double) size * size;
+
+                System.out.printf("%8s %10d %12.2f %12.2f %12.2f %10.1f%n",
+                        names[v], iterations, pixels / (itemMs * 1000), pixels / (kernelMs * 1000),
+                        pixels / (mirrorMs * 1000), itemMs / mirrorMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package timing;
+
+import math.Affine2D;
+import math.PointKernel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Throughput of the (N x 3) * (3 x 3) point kernel, in points per second.
+ *
+ * Usage: PointKernelBench [maxExponent]
+ * Sizes run from 10^4 up to 10^maxExponent points (default 8).
+ * Sizes which do not fit in the heap are skipped.
+ */
+public class PointKernelBench {
+    private static final int TRIALS = 5;
+
+    public static void main(String[] args) {
+        int maxExp = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+
+        Affine2D t = Affine2D.i().scale2D(.3).rotate2D(1.1).shift2D(2, -1);
+        double[] m = new double[] {
+                t.val(0), t.val(1), .1,
+                t.val(2), t.val(3), .2,
+                t.val(4), t.val(5), 1
+        };
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        System.out.println("Parallelism: " + pool.getParallelism());
+        System.out.printf("%12s %16s %16s %16s%n", "points", "affine pts/s", "general pts/s", "parallel pts/s");
+
+        for (int exp = 4; exp <= maxExp; exp++) {
+            int points = (int) Math.pow(10, exp);
+
+            double[] src;
+            double[] dst;
+
+            try {
+                src = new double[points * 3];
+                dst = new double[points * 3];
+            } catch (OutOfMemoryError e) {
+                System.out.printf("%12d %16s%n", points, "skipped (heap)");
+                continue;
+            }
+
+            Random r = new Random(exp);
+            for (int i = 0; i < src.length; i += 3) {
+                src[i] = r.nextDouble();
+                src[i + 1] = r.nextDouble();
+                src[i + 2] = 1;
+            }
+
+            // Warm up.
+            PointKernel.transform(src, 0, dst, 0, points, t);
+            PointKernel.transform(src, 0, dst, 0, points, m);
+            PointKernel.transformParallel(src, 0, dst, 0, points, t, pool);
+
+            double affineMs = Timer.time(TRIALS, () -> PointKernel.transform(src, 0, dst, 0, points, t));
+            double generalMs = Timer.time(TRIALS, () -> PointKernel.transform(src, 0, dst, 0, points, m));
+            double parallelMs = Timer.time(TRIALS,
+                    () -> PointKernel.transformParallel(src, 0, dst, 0, points, t, pool));
+
+            System.out.printf("%12d %16.3e %16.3e %16.3e%n", points,
+                    points / (affineMs / 1000.0),
+                    points / (generalMs / 1000.0),
+                    points / (parallelMs / 1000.0));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package timing;
+
+import raster.Raster;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tile throughput of Raster on a 4K viewport of the Mandelbrot set, for pools of 1 up to
+ * maxThreads threads.
+ *
+ * Usage: RasterBench [maxThreads] [iterations]
+ * Defaults to twice the available processors, and 256 iterations.
+ *
+ * Then full renders against pans by Runner's 50 pixel step, and the progressive passes
+ * of refine, on the common pool.
+ */
+public class RasterBench {
+    private static final int TRIALS = 3;
+
+    private static final int WIDTH = 3840;
+    private static final int HEIGHT = 2160;
+
+    // Plain escape time, grey by iteration count.
+    private static Raster.PixelFunction mandelbrot(int iterations) {
+        return (cx, cy) -> {
+            double x = cx, y = cy;
+
+            for (int i = 0; i < iterations; i++) {
+                double xx = x * x, yy = y * y;
+
+                if (xx + yy > 4) {
+                    double t = (double) i / iterations;
+                    return Raster.argb(t, t, t);
+                }
+
+                y = (2 * x * y) + cy;
+                x = (xx - yy) + cx;
+            }
+
+            return 0xFF000000;
+        };
+    }
+
+    public static void main(String[] args) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 2 * cores;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        Raster raster = new Raster(WIDTH, HEIGHT);
+        raster.center(new BigDecimal("-0.5"), BigDecimal.ZERO);
+        raster.stepSize(new BigDecimal("3").divide(BigDecimal.valueOf(WIDTH)));
+
+        Raster.PixelFunction f = mandelbrot(iterations);
+
+        System.out.printf("%dx%d, %d tiles of %d px, %d iterations, %d processors%n",
+                WIDTH, HEIGHT, ((WIDTH + Raster.TILE - 1) / Raster.TILE) * ((HEIGHT + Raster.TILE - 1) / Raster.TILE),
+                Raster.TILE, iterations, cores);
+        System.out.printf("%8s %12s %12s %12s %10s%n", "threads", "ms", "tiles/s", "Mpixels/s", "speedup");
+
+        double base = 0;
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+
+            // Warm up.
+            raster.render(f, pool);
+
+            double ms = Timer.time(TRIALS, () -> raster.render(f, pool));
+            pool.shutdown();
+
+            if (threads == 1) {
+                base = ms;
+            }
+
+            System.out.printf("%8d %12.1f %12.0f %12.1f %10.2f%n",
+                    threads, ms, raster.lastTiles() / (ms / 1000), (WIDTH * (double) HEIGHT) / (ms * 1000), base / ms);
+        }
+
+        System.out.printf("%n%8s %12s %12s%n", "pan", "ms", "pixels");
+
+        raster.render(f);
+        System.out.printf("%8s %12.1f %12d%n", "full", raster.lastNanos() / 1e6, raster.lastPixels());
+
+        int[][] pans = {{50, 0}, {0, 50}, {-50, -50}};
+
+        for (int[] p : pans) {
+            double ms = Timer.time(TRIALS, () -> raster.pan(p[0], p[1], f));
+            System.out.printf("%8s %12.1f %12d%n", p[0] + "," + p[1], ms, raster.lastPixels());
+        }
+
+        System.out.printf("%n%8s %12s %12s %12s%n", "pass", "ms", "pixels", "total ms");
+
+        raster.invalidate();
+        double total = 0;
+        int pass = 0;
+        boolean more;
+
+        do {
+            more = raster.refine(f);
+            total += raster.lastNanos() / 1e6;
+            pass++;
+
+            System.out.printf("%8d %12.1f %12d %12.1f%n", pass, raster.lastNanos() / 1e6, raster.lastPixels(), total);
+        } while (more);
+    }
+}
@@ -0,0 +1,58 @@
+package timing;
+
+import math.Affine2D;
+import math.IFS;
+import math.Matrix;
+import math.PointKernel;
+
+import java.util.Random;
+
+/**
+ * Scalar vs SIMD point kernels, and IFS expansion time.
+ *
+ * Run from the jar on Java 17+ with --add-modules jdk.incubator.vector.
+ * Run again with -Dmath.vector=false to get the scalar IFS expansion time.
+ */
+public class VectorBench {
+    private static final int TRIALS = 10;
+
+    public static void main(String[] args) {
+        System.out.println("Vectorized: " + PointKernel.vectorized());
+
+        Affine2D t = Affine2D.i().scale2D(.3).rotate2D(1.1).shift2D(2, -1);
+
+        System.out.printf("%12s %16s %16s%n", "points", "scalar pts/s", "kernel pts/s");
+
+        for (int points : new int[] {1000, 100000, 10000000}) {
+            double[] src = new double[points * 3];
+            double[] dst = new double[points * 3];
+
+            Random r = new Random(points);
+            for (int i = 0; i < src.length; i += 3) {
+                src[i] = r.nextDouble();
+                src[i + 1] = r.nextDouble();
+                src[i + 2] = 1;
+            }
+
+            for (int i = 0; i < 20000000 / points + 5; i++) {
+                PointKernel.transformScalar(src, 0, dst, 0, points, t);
+                PointKernel.transform(src, 0, dst, 0, points, t);
+            }
+
+            double scalarMs = Timer.time(TRIALS, () -> PointKernel.transformScalar(src, 0, dst, 0, points, t));
+            double kernelMs = Timer.time(TRIALS, () -> PointKernel.transform(src, 0, dst, 0, points, t));
+
+            System.out.printf("%12d %16.3e %16.3e%n", points,
+                    points / (scalarMs / 1000.0), points / (kernelMs / 1000.0));
+        }
+
+        IFS ifs = IFS.quadPulse(Math.PI / 3);
+        Matrix seed = Matrix.sprite2D(0, 0, 1, 0);
+
+        for (int i = 0; i < 5; i++) {
+            ifs.iterate(8, seed);
+        }
+
+        System.out.printf("quadPulse depth 8: %.2f ms%n", Timer.time(TRIALS, () -> ifs.iterate(8, seed)));
+    }
+}
@@ -0,0 +1,125 @@
+package math;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of the bulk kernels in PointKernel and Matrix.
+ *
+ * Java 17+ version, built on jdk.incubator.vector.
+ * The vector classes are only touched from Impl, so this class still loads
+ * when the incubator module is not in the boot layer.
+ *
+ * Results are bit for bit equal to the scalar code.
+ * Each lane performs the same multiplies and adds, in the same order, with no fused multiply add.
+ * A w lane copies its input, just like the scalar code.
+ */
+final class VectorKernel {
+    static final int MIN_POINTS = 64;
+
+    private static final boolean AVAILABLE = !"false".equals(System.getProperty("math.vector")) &&
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private VectorKernel() {
+
+    }
+
+    static boolean available() {
+        return AVAILABLE;
+    }
+
+    static void transform(double[] src, int srcOff, double[] dst, int dstOff, int points, Affine2D t) {
+        Impl.transform(src, srcOff, dst, dstOff, points, t);
+    }
+
+    static void scale(double[] src, double[] dst, double s) {
+        Impl.scale(src, dst, s);
+    }
+
+    /*
+     * Points are interleaved [x, y, w, x, y, w, ...], so rather than gathering coordinates,
+     * each lane computes the value at its own position q from contiguous loads at q - 1 ... q + 2.
+     * A lane on an x computes (q)a + (q + 1)c + (q + 2)e,
+     * a lane on a y computes (q - 1)b + (q)d + (q + 1)f,
+     * and a lane on a w keeps (q). Masks pick the right result per lane.
+     *
+     * Vectors are processed 3 at a time, i.e. one block of exactly S.length() points,
+     * so every block starts on an x and the lane pattern repeats per block.
+     */
+    private static final class Impl {
+        // 4 lanes with AVX2, 8 with AVX-512.
+        private static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+        // Yv and Wv mark the y and w lanes of vector v in a block.
+        // Separate constants rather than arrays, so the JIT can keep them in registers.
+        private static final VectorMask<Double> Y0 = mask(0, 1);
+        private static final VectorMask<Double> Y1 = mask(1, 1);
+        private static final VectorMask<Double> Y2 = mask(2, 1);
+        private static final VectorMask<Double> W0 = mask(0, 2);
+        private static final VectorMask<Double> W1 = mask(1, 2);
+        private static final VectorMask<Double> W2 = mask(2, 2);
+
+        private static VectorMask<Double> mask(int v, int coord) {
+            boolean[] bits = new boolean[S.length()];
+
+            for (int j = 0; j < bits.length; j++) {
+                bits[j] = ((v * S.length()) + j) % 3 == coord;
+            }
+
+            return VectorMask.fromArray(S, bits, 0);
+        }
+
+        private static DoubleVector lanes(double[] src, int q, Affine2D t,
+                                          VectorMask<Double> yLanes, VectorMask<Double> wLanes) {
+            DoubleVector prev = DoubleVector.fromArray(S, src, q - 1);
+            DoubleVector cur = DoubleVector.fromArray(S, src, q);
+            DoubleVector next = DoubleVector.fromArray(S, src, q + 1);
+            DoubleVector next2 = DoubleVector.fromArray(S, src, q + 2);
+
+            DoubleVector xs = cur.mul(t.a).add(next.mul(t.c)).add(next2.mul(t.e));
+            DoubleVector ys = prev.mul(t.b).add(cur.mul(t.d)).add(next.mul(t.f));
+
+            return xs.blend(ys, yLanes).blend(cur, wLanes);
+        }
+
+        static void transform(double[] src, int srcOff, double[] dst, int dstOff, int points, Affine2D t) {
+            int lanes = S.length();
+
+            // The first point is done by the scalar code, so q - 1 never leaves the batch.
+            // A block needs one more point after it, so q + 2 never leaves the batch.
+            PointKernel.transformScalar(src, srcOff, dst, dstOff, Math.min(points, 1), t);
+
+            int p = 1;
+
+            for (; p + lanes < points; p += lanes) {
+                int q = srcOff + (p * 3);
+                int r = dstOff + (p * 3);
+
+                // All loads before any store, so dst may be src.
+                DoubleVector v0 = lanes(src, q, t, Y0, W0);
+                DoubleVector v1 = lanes(src, q + lanes, t, Y1, W1);
+                DoubleVector v2 = lanes(src, q + (2 * lanes), t, Y2, W2);
+
+                v0.intoArray(dst, r);
+                v1.intoArray(dst, r + lanes);
+                v2.intoArray(dst, r + (2 * lanes));
+            }
+
+            PointKernel.transformScalar(src, srcOff + (p * 3), dst, dstOff + (p * 3), points - p, t);
+        }
+
+        static void scale(double[] src, double[] dst, double s) {
+            int bound = S.loopBound(src.length);
+            int i = 0;
+
+            for (; i < bound; i += S.length()) {
+                DoubleVector.fromArray(S, src, i).mul(s).intoArray(dst, i);
+            }
+
+            for (; i < src.length; i++) {
+                dst[i] = src[i] * s;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+import static math.Item.*;
+import static math.Util.*;
+
+public class TestAffine2D {
+
+    @Test
+    public void testMatchesMatrix() {
+        Affine2D t = Affine2D.i().scale2D(.3).rotate2D(1.1).shift2D(2, -1).scale2D(2, 3);
+        Matrix m = i(3).scale2D(.3).rotate2D(1.1).shift2D(2, -1).scale2D(2, 3);
+
+        assertEquals(m, t.asMatrix());
+        assertEquals(t, Affine2D.of(m));
+
+        Matrix sprite = sprite2D(0, 0, 1, 0, .5, 2);
+        assertEquals(sprite.times(m), sprite.times(t));
+        assertEquals(point2D(1, 2).times(m), point2D(1, 2).times(t));
+        assertEquals(vector2D(1, 2).times(m), vector2D(1, 2).times(t));
+    }
+
+    @Test
+    public void testInverse() {
+        Affine2D t = Affine2D.i().scale2D(4).rotate2D(.4).shift2D(-3, 7);
+
+        assertEquals(Affine2D.i(), t.times(t.inverse()));
+        assertEquals(Affine2D.i(), t.inverse().times(t));
+        assertTrue(Math.abs(t.determinant() - 16) <= EPS);
+
+        assertThrows(ArithmeticException.class, () -> Affine2D.scaling(0, 1).inverse());
+    }
+
+    @Test
+    public void testNorm() {
+        assertEquals(4, Affine2D.i().scale2D(4).rotate2D(.4).shift2D(-3, 7).norm(), EPS);
+        assertEquals(3, Affine2D.scaling(-3, 2).norm(), EPS);
+        assertEquals(0, Affine2D.scaling(0, 0).norm(), EPS);
+
+        // Shear [1 1; 0 1] stretches by the golden ratio.
+        assertEquals((1 + Math.sqrt(5)) / 2, Affine2D.of(1, 1, 0, 1, 5, 5).norm(), EPS);
+    }
+
+    @Test
+    public void testAffineTrans2D() {
+        Matrix m = i(3).affineTrans2D(
+                point2D(0, 0), point2D(1, 0), point2D(0, 1),
+                point2D(2, 2), point2D(2, 4), point2D(0, 2)
+        );
+
+        assertEquals(point2D(2, 2), point2D(0, 0).times(m));
+        assertEquals(point2D(2, 4), point2D(1, 0).times(m));
+        assertEquals(point2D(0, 2), point2D(0, 1).times(m));
+
+        // Collinear to within an ulp, the determinant is not zero but the frame is useless.
+        assertThrows(ArithmeticException.class, () -> i(3).affineTrans2D(
+                point2D(0, 0), point2D(1, 1), point2D(1, 1 + Math.ulp(1.0)),
+                point2D(2, 2), point2D(2, 4), point2D(0, 2)
+        ));
+    }
+}
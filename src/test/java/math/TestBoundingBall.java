@@ -0,0 +1,62 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestBoundingBall {
+
+    @Test
+    public void testHoldsExpansion() {
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        for (IFS ifs : new IFS[] {IFS.quadPulse(1.2), IFS.trianglePulse(.4), IFS.trianglePulseReduced(.2)}) {
+            BoundingBall ball = BoundingBall.of(ifs, seed);
+            assertTrue(ball.isBounded());
+
+            Matrix m = ifs.iterate(6, seed);
+            for (int r = 0; r < m.rows(); r++) {
+                assertTrue(ball.contains(m.val(r, 0), m.val(r, 1)));
+            }
+
+            // Images of the ball hold the branch below them.
+            Affine2D first = Affine2D.of(ifs.first());
+            BoundingBall image = ball.times(first);
+            Matrix branch = ifs.iterate(5, seed).times(first);
+
+            for (int r = 0; r < branch.rows(); r++) {
+                assertTrue(image.contains(branch.val(r, 0), branch.val(r, 1)));
+            }
+        }
+    }
+
+    @Test
+    public void testHoldsAttractor() {
+        IFS ifs = IFS.quadPulse(1.2);
+        BoundingBall ball = BoundingBall.of(ifs);
+        Matrix points = ChaosGame.of(ifs).points(5000, 11);
+
+        for (int r = 0; r < points.rows(); r++) {
+            assertTrue(ball.contains(points.val(r, 0), points.val(r, 1)));
+        }
+    }
+
+    @Test
+    public void testUnbounded() {
+        IFS growing = IFS.ifs(Affine2D.i().scale2D(.5), Affine2D.i().scale2D(2).shift2D(1, 0));
+
+        assertFalse(BoundingBall.of(growing).isBounded());
+        assertTrue(BoundingBall.of(growing).intersects(100, 100, 101, 101));
+    }
+
+    @Test
+    public void testIntersects() {
+        BoundingBall ball = BoundingBall.of(IFS.ifs(Affine2D.i().scale2D(.5)), sprite2D(-1, 0, 1, 0));
+
+        assertEquals(1, ball.radius(), Util.EPS);
+        assertTrue(ball.intersects(.5, .5, 2, 2));
+        assertFalse(ball.intersects(.8, .8, 2, 2));
+        assertTrue(ball.intersects(-5, -5, 5, 5));
+    }
+}
@@ -0,0 +1,99 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBoxCounter {
+
+    private static final IFS SQUARE = IFS.ifs(
+            Affine2D.i().scale2D(.5),
+            Affine2D.i().scale2D(.5).shift2D(.5, 0),
+            Affine2D.i().scale2D(.5).shift2D(0, .5),
+            Affine2D.i().scale2D(.5).shift2D(.5, .5)
+    );
+
+    private static final IFS SIERPINSKI = IFS.ifs(
+            Affine2D.i().scale2D(.5),
+            Affine2D.i().scale2D(.5).shift2D(.5, 0),
+            Affine2D.i().scale2D(.5).shift2D(.25, .5)
+    );
+
+    private static final IFS SEGMENT = IFS.ifs(
+            Affine2D.i().scale2D(.5),
+            Affine2D.i().scale2D(.5).shift2D(.5, 0)
+    );
+
+    private static double dimension(IFS ifs) {
+        BoxCounter counter = new BoxCounter(0, 0, 1, 9);
+        ChaosGame.of(ifs).run(1 << 20, 5, counter);
+
+        return counter.fit(2, 8).dimension();
+    }
+
+    @Test
+    public void testDimensions() {
+        assertEquals(2, dimension(SQUARE), .05);
+        assertEquals(Math.log(3) / Math.log(2), dimension(SIERPINSKI), .05);
+        assertEquals(1, dimension(SEGMENT), .05);
+    }
+
+    @Test
+    public void testCounts() {
+        // Coarse levels against a direct count.
+        Matrix points = ChaosGame.of(SIERPINSKI).points(20000, 9);
+        BoxCounter counter = new BoxCounter(0, 0, 1, 9);
+        counter.add(points);
+
+        long[] counts = counter.counts();
+
+        for (int level = 0; level <= 9; level++) {
+            Set<Long> cells = new HashSet<>();
+            int side = 1 << level;
+
+            for (int r = 0; r < points.rows(); r++) {
+                long x = Math.min((long) (points.val(r, 0) * side), side - 1);
+                long y = Math.min((long) (points.val(r, 1) * side), side - 1);
+                cells.add((y * side) + x);
+            }
+
+            assertEquals(cells.size(), counts[level]);
+        }
+
+        assertEquals(1, counts[0]);
+        assertEquals(20000, counter.points());
+        assertEquals(0, counter.outside());
+    }
+
+    @Test
+    public void testParallel() {
+        ChaosGame game = ChaosGame.of(IFS.quadPulse(1.2));
+        BoundingBall ball = BoundingBall.of(IFS.quadPulse(1.2));
+
+        BoxCounter one = BoxCounter.of(ball, 8);
+        ForkJoinPool single = new ForkJoinPool(1);
+        one.addParallel(game, 100000, 3, 4, single);
+        single.shutdown();
+
+        BoxCounter many = BoxCounter.of(ball, 8);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        many.addParallel(game, 100000, 3, 4, pool);
+        pool.shutdown();
+
+        assertArrayEquals(one.counts(), many.counts());
+        assertEquals(100000, many.points());
+        assertEquals(0, many.outside());
+    }
+
+    @Test
+    public void testBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BoxCounter(0, 0, 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new BoxCounter(0, 0, 1, BoxCounter.MAX_LEVELS + 1));
+        assertThrows(IllegalArgumentException.class, () -> new BoxCounter(0, 0, 1, 4).merge(new BoxCounter(0, 0, 1, 5)));
+        assertThrows(IllegalArgumentException.class, () -> new BoxCounter(0, 0, 1, 4).fit(3, 3));
+    }
+}
@@ -0,0 +1,124 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestChaosGame {
+
+    @Test
+    public void testOnAttractor() {
+        // Points should stay in the bounding box of a deep level.
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix deep = ifs.iterate(6, sprite2D(0, 0, 1, 0));
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        for (int r = 0; r < deep.rows(); r++) {
+            minX = Math.min(minX, deep.val(r, 0));
+            maxX = Math.max(maxX, deep.val(r, 0));
+            minY = Math.min(minY, deep.val(r, 1));
+            maxY = Math.max(maxY, deep.val(r, 1));
+        }
+
+        Matrix points = ChaosGame.of(ifs).points(10000, 42);
+
+        for (int r = 0; r < points.rows(); r++) {
+            assertTrue(points.val(r, 0) >= minX - .01 && points.val(r, 0) <= maxX + .01);
+            assertTrue(points.val(r, 1) >= minY - .01 && points.val(r, 1) <= maxY + .01);
+            assertEquals(1, points.val(r, 2));
+        }
+    }
+
+    @Test
+    public void testReproducible() {
+        ChaosGame game = ChaosGame.of(IFS.trianglePulse(.4));
+
+        assertArrayEquals(game.points(1000, 7).data(), game.points(1000, 7).data());
+        assertFalse(Arrays.equals(game.points(1000, 7).data(), game.points(1000, 8).data()));
+    }
+
+    @Test
+    public void testParallel() {
+        ChaosGame game = ChaosGame.of(IFS.quadPulse(1.2));
+        int parts = 4;
+
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool three = new ForkJoinPool(3);
+        double[][] sums;
+        double[][] again;
+
+        try {
+            sums = run(game, parts, one);
+            again = run(game, parts, three);
+        } finally {
+            one.shutdown();
+            three.shutdown();
+        }
+
+        for (int p = 0; p < parts; p++) {
+            assertArrayEquals(sums[p], again[p]);
+        }
+
+        // 10001 points, the first part takes the extra one.
+        assertEquals(2501, sums[0][2]);
+        assertEquals(2500, sums[3][2]);
+    }
+
+    private static double[][] run(ChaosGame game, int parts, ForkJoinPool pool) {
+        double[][] sums = new double[parts][3];
+
+        game.runParallel(10001, 3, parts, pool, p -> (x, y) -> {
+            sums[p][0] += x;
+            sums[p][1] += y;
+            sums[p][2]++;
+        });
+
+        pool.shutdown();
+
+        return sums;
+    }
+
+    @Test
+    public void testWeights() {
+        IFS ifs = IFS.quadPulse(1.2);
+        ChaosGame game = ChaosGame.of(ifs, 1, 0, 2, 0, 5);
+
+        int[] counts = new int[game.maps()];
+        SplittableRandom random = new SplittableRandom(1);
+        int n = 80000;
+
+        for (int i = 0; i < n; i++) {
+            counts[game.pick(random)]++;
+        }
+
+        assertEquals(0, counts[1]);
+        assertEquals(0, counts[3]);
+        assertEquals(n / 8.0, counts[0], n * .01);
+        assertEquals(n / 4.0, counts[2], n * .01);
+        assertEquals(n * 5 / 8.0, counts[4], n * .01);
+
+        // Only the first map, the points sit on its fixed point, the origin.
+        Matrix fixed = ChaosGame.of(ifs, 1, 0, 0, 0, 0).points(10, 1);
+        assertEquals(0, fixed.val(9, 0), Util.EPS);
+        assertEquals(0, fixed.val(9, 1), Util.EPS);
+
+        // Weights carried by the IFS are used by default.
+        assertEquals(fixed, ChaosGame.of(ifs.weighted(1, 0, 0, 0, 0)).points(10, 1));
+    }
+
+    @Test
+    public void testBadWeights() {
+        IFS ifs = IFS.trianglePulseReduced(.2);
+
+        assertThrows(IllegalArgumentException.class, () -> ChaosGame.of(ifs, 1));
+        assertThrows(IllegalArgumentException.class, () -> ChaosGame.of(ifs, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> ChaosGame.of(ifs, -1, 2));
+    }
+}
@@ -0,0 +1,94 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestCompositeCache {
+
+    @Test
+    public void testIterate() {
+        CompositeCache cache = new CompositeCache(1 << 20);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        for (IFS ifs : new IFS[] {IFS.quadPulse(1.2), IFS.trianglePulse(.4), IFS.trianglePulseReduced(.2)}) {
+            for (int depth = 0; depth <= 5; depth++) {
+                assertEquals(ifs.iterate(depth, seed), ifs.iterate(depth, seed, cache));
+            }
+        }
+
+        // Other seeds reuse the same composites.
+        cache = new CompositeCache(1 << 20);
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix square = sprite2D(0, 0, 1, 0).concat(sprite2D(1, 0, 1, 1)).concat(sprite2D(1, 1, 0, 1));
+
+        assertEquals(ifs.iterate(4, square), cache.iterate(ifs, 4, square));
+        assertEquals(ifs.iterate(4, seed), cache.iterate(ifs, 4, seed));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testPointBuffer() {
+        CompositeCache cache = new CompositeCache(1 << 20);
+        PointBuffer.Pool pool = new PointBuffer.Pool();
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        try (PointBuffer pb = cache.iterate(ifs, 5, seed, pool)) {
+            assertEquals(ifs.iterate(5, seed), pb.toMatrix());
+        }
+    }
+
+    @Test
+    public void testCounters() {
+        CompositeCache cache = new CompositeCache(1 << 20);
+        IFS ifs = IFS.quadPulse(1.2);
+
+        cache.composites(ifs, 3);
+        cache.composites(ifs, 3);
+        cache.composites(ifs, 4);
+
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals((125 + 625) * 6 * Double.BYTES, cache.bytes());
+
+        // Identity, not value.
+        cache.composites(IFS.quadPulse(1.2), 3);
+        assertEquals(3, cache.misses());
+
+        cache.clear();
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    public void testEviction() {
+        IFS one = IFS.quadPulse(1.2);
+        IFS two = IFS.quadPulse(1.3);
+        long entry = 625 * 6 * Double.BYTES;
+
+        CompositeCache cache = new CompositeCache(2 * entry);
+
+        cache.composites(one, 4);
+        cache.composites(two, 4);
+        cache.composites(one, 4);
+        assertEquals(1, cache.hits());
+
+        // Evicts two, the least recently used.
+        cache.composites(IFS.quadPulse(1.4), 4);
+        assertEquals(2 * entry, cache.bytes());
+
+        cache.composites(one, 4);
+        assertEquals(2, cache.hits());
+        cache.composites(two, 4);
+        assertEquals(2, cache.hits());
+
+        // Over the cap alone, never kept.
+        CompositeCache small = new CompositeCache(entry - 1);
+        small.composites(one, 4);
+        small.composites(one, 4);
+        assertEquals(0, small.hits());
+        assertEquals(0, small.bytes());
+    }
+}
@@ -0,0 +1,97 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestExpansion {
+
+    @Test
+    public void testUniform() {
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        for (IFS ifs : new IFS[] {IFS.quadPulse(1.2), IFS.trianglePulse(.4), IFS.trianglePulseReduced(.2)}) {
+            for (int depth = 0; depth <= 5; depth++) {
+                Matrix lod = Expansion.of(ifs).tolerance(0).maxDepth(depth).expand(seed);
+                assertEquals(ifs.iterate(depth, seed), lod);
+            }
+        }
+    }
+
+    @Test
+    public void testTolerance() {
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        Expansion lod = Expansion.of(ifs).viewport(Affine2D.scaling(100, 100)).tolerance(2);
+        Matrix m = lod.expand(seed);
+
+        // Every segment is within tolerance, and far coarser than the depth cap.
+        for (int r = 0; r < m.rows(); r += 2) {
+            double length = Math.hypot(m.val(r + 1, 0) - m.val(r, 0), m.val(r + 1, 1) - m.val(r, 1));
+            assertTrue(length * 100 <= 2 + Util.EPS);
+        }
+
+        assertTrue(m.rows() < ifs.iterate(6, seed).rows());
+
+        // The curve still runs end to end.
+        assertEquals(0, m.val(0, 0), Util.EPS);
+        assertEquals(1, m.val(m.rows() - 1, 0), Util.EPS);
+
+        // Zooming in adds detail.
+        Matrix zoomed = lod.viewport(Affine2D.scaling(1000, 1000)).expand(seed);
+        assertTrue(zoomed.rows() > m.rows());
+    }
+
+    @Test
+    public void testPointBuffer() {
+        Expansion lod = Expansion.of(IFS.trianglePulse(.4)).viewport(Affine2D.scaling(300, 300)).tolerance(1);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        try (PointBuffer pb = lod.expand(seed, new PointBuffer.Pool())) {
+            assertEquals(lod.expand(seed), pb.toMatrix());
+        }
+    }
+
+    @Test
+    public void testCull() {
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        // A 200 pixel window on [.4, .6] x [.1, .3].
+        Affine2D view = Affine2D.i().shift2D(-.4, -.1).scale2D(1000);
+        Expansion lod = Expansion.of(ifs).tolerance(0).maxDepth(6);
+
+        Matrix full = lod.viewport(view).expand(seed);
+        Matrix culled = lod.viewport(view, 200, 200).expand(seed);
+
+        assertTrue(culled.rows() < full.rows() / 2);
+
+        // Culled segments are the full ones, in order, less those wholly off screen.
+        int c = 0;
+
+        for (int r = 0; r < full.rows(); r += 2) {
+            boolean kept = c < culled.rows() &&
+                    full.val(r, 0) == culled.val(c, 0) && full.val(r, 1) == culled.val(c, 1) &&
+                    full.val(r + 1, 0) == culled.val(c + 1, 0) && full.val(r + 1, 1) == culled.val(c + 1, 1);
+
+            if (kept) {
+                c += 2;
+            } else {
+                assertFalse(onScreen(full, r, view, 200, 200));
+            }
+        }
+
+        assertEquals(culled.rows(), c);
+    }
+
+    // Whether segment r's bounding box meets the window.
+    private static boolean onScreen(Matrix m, int r, Affine2D view, double width, double height) {
+        double x0 = view.x(m.val(r, 0), m.val(r, 1)), y0 = view.y(m.val(r, 0), m.val(r, 1));
+        double x1 = view.x(m.val(r + 1, 0), m.val(r + 1, 1)), y1 = view.y(m.val(r + 1, 0), m.val(r + 1, 1));
+
+        return Math.max(x0, x1) >= 0 && Math.min(x0, x1) <= width &&
+                Math.max(y0, y1) >= 0 && Math.min(y0, y1) <= height;
+    }
+}
@@ -0,0 +1,82 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+import static math.Util.*;
+
+public class TestFloatMatrix {
+
+    private static double maxError(FloatMatrix f, Matrix m) {
+        double err = 0;
+
+        for (int r = 0; r < m.rows(); r++) {
+            for (int c = 0; c < 3; c++) {
+                err = Math.max(err, Math.abs(f.val(r, c) - m.val(r, c)));
+            }
+        }
+
+        return err;
+    }
+
+    @Test
+    public void testIterateFloatError() {
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        for (IFS ifs : new IFS[] {IFS.quadPulse(Math.PI / 3), IFS.trianglePulseReduced(Math.PI / 12)}) {
+            for (int depth = 0; depth <= 6; depth++) {
+                Matrix exact = ifs.iterate(depth, seed);
+                FloatMatrix approx = ifs.iterateFloat(depth, seed);
+
+                assertEquals(exact.rows(), approx.size());
+                assertTrue(approx.approxEquals(exact));
+                assertEquals(approx, FloatMatrix.of(exact));
+                assertFalse(approx.equals(exact) || exact.equals(approx));
+
+                // Coordinates lie in [-1, 2], so one float rounding is at most 2^-23.
+                // Composing in double keeps the error at that one rounding, whatever the depth.
+                assertTrue(maxError(approx, exact) <= Math.ulp(2.0f));
+            }
+        }
+    }
+
+    @Test
+    public void testDriftWithoutDoubleComposition() {
+        // For comparison, transforming float storage level by level rounds once per level.
+        IFS ifs = IFS.quadPulse(Math.PI / 3);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        FloatMatrix level = FloatMatrix.of(seed);
+        Affine2D[] ts = Expander.transforms(ifs);
+
+        for (int d = 0; d < 6; d++) {
+            FloatMatrix next = null;
+
+            for (Affine2D t : ts) {
+                FloatMatrix image = level.times(t);
+                next = next == null ? image : next.concat(image);
+            }
+
+            level = next;
+        }
+
+        Matrix exact = ifs.iterate(6, seed);
+
+        double composed = maxError(ifs.iterateFloat(6, seed), exact);
+        double levelwise = maxError(level, exact);
+
+        assertTrue(composed <= levelwise);
+        assertTrue(levelwise <= 6 * 4 * Math.ulp(2.0f));
+    }
+
+    @Test
+    public void testFloatEquals() {
+        assertTrue(floatEquals(1, 1 + 1e-7));
+        assertFalse(floatEquals(1, 1 + 1e-5));
+
+        // Past 8, a float cannot resolve EPS.
+        assertTrue(floatEquals(1e6, (float) (1e6 + .01)));
+        assertFalse(floatEquals(1e6, 1e6 + 1));
+    }
+}
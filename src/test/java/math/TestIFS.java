@@ -0,0 +1,219 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestIFS {
+
+    // The original definition, one level at a time with concat.
+    private static Matrix reference(IFS ifs, int amt, Matrix m) {
+        for (int i = 0; i < amt; i++) {
+            Matrix next = null;
+
+            for (IFS s = ifs; !s.isEmpty(); s = s.rest()) {
+                Matrix image = m.times(s.first());
+                next = next == null ? image : next.concat(image);
+            }
+
+            m = next;
+        }
+
+        return m;
+    }
+
+    @Test
+    public void testIterate() {
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        for (IFS ifs : new IFS[] {IFS.quadPulse(1.2), IFS.trianglePulse(.4), IFS.trianglePulseReduced(.2)}) {
+            for (int depth = 0; depth <= 5; depth++) {
+                assertEquals(reference(ifs, depth, seed), ifs.iterate(depth, seed));
+            }
+        }
+    }
+
+    @Test
+    public void testGeneralMaps() {
+        // 2x2 maps on 2 column rows, and a non affine 3x3.
+        IFS twoD = IFS.ifs(new Matrix(2, 2, new double[] {.5, 0, 0, .5}),
+                new Matrix(2, 2, new double[] {0, .5, -.5, 0}));
+        Matrix seed2 = new Matrix(2, 2, new double[] {1, 2, 3, 4});
+
+        assertEquals(reference(twoD, 4, seed2), twoD.iterate(4, seed2));
+
+        IFS projective = IFS.ifs(new Matrix(3, 3, new double[] {1, 0, .1, 0, 1, 0, 0, 0, 1}), i(3).scale2D(.5));
+        Matrix seed3 = sprite2D(0, 0, 1, 1);
+
+        assertEquals(reference(projective, 3, seed3), projective.iterate(3, seed3));
+    }
+
+    @Test
+    public void testOf() {
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        assertEquals(reference(ifs, 1, seed), ifs.of(seed));
+
+        // Last map first.
+        List<Matrix> images = ifs.ofList(seed);
+        assertEquals(5, images.size());
+        assertEquals(seed.times(ifs.first()), images.get(4));
+    }
+
+    @Test
+    public void testParallelDeterministic() {
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        ForkJoinPool one = new ForkJoinPool(1);
+        double[] sequential = ifs.iterate(7, seed, one).data();
+        one.shutdown();
+
+        for (int threads = 2; threads <= 4; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            double[] parallel = ifs.iterate(7, seed, pool).data();
+            pool.shutdown();
+
+            assertArrayEquals(sequential, parallel);
+        }
+
+        assertEquals(reference(ifs, 7, seed), ifs.iterate(7, seed));
+    }
+
+    @Test
+    public void testStream() {
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+        Matrix expected = ifs.iterate(5, seed);
+
+        for (int chunkRows : new int[] {1, 2, 7, 64, 1 << 20}) {
+            Matrix streamed = ifs.stream(5, seed, chunkRows).reduce(Matrix::concat).get();
+            assertEquals(expected, streamed);
+
+            // Whole segments per chunk.
+            ifs.stream(5, seed, chunkRows).forEach(c -> assertEquals(0, c.rows() % 2));
+        }
+
+        assertEquals(seed, ifs.stream(0, seed, 16).reduce(Matrix::concat).get());
+    }
+
+    @Test
+    public void testStreamSplit() {
+        IFS ifs = IFS.trianglePulse(.4);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+        Matrix expected = ifs.iterate(6, seed);
+
+        Spliterator<Matrix> whole = ifs.spliterator(6, seed, 10);
+        // 4^6 blocks of 2 rows, 5 blocks per chunk.
+        assertEquals(820, whole.estimateSize());
+
+        Spliterator<Matrix> prefix = whole.trySplit();
+        assertEquals(820, prefix.estimateSize() + whole.estimateSize());
+
+        List<Matrix> chunks = new ArrayList<>();
+        prefix.forEachRemaining(chunks::add);
+        whole.forEachRemaining(chunks::add);
+        assertEquals(expected, chunks.stream().reduce(Matrix::concat).get());
+
+        // Parallel streams keep order.
+        Matrix parallel = StreamSupport.stream(ifs.spliterator(6, seed, 10), true)
+                .reduce(Matrix::concat).get();
+        assertEquals(expected, parallel);
+    }
+
+    @Test
+    public void testStreamPastIntRange() {
+        IFS ifs = IFS.quadPulse(1.2);
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        // 5^14 blocks, more rows than any Matrix holds.
+        Spliterator<Matrix> deep = ifs.spliterator(14, seed, 1000);
+        assertEquals((6103515625L + 499) / 500, deep.estimateSize());
+
+        // One chunk of 500 blocks, the first being the seed under map 0 fourteen times.
+        Matrix[] chunk = new Matrix[1];
+        assertTrue(deep.tryAdvance(m -> chunk[0] = m));
+        assertEquals(1000, chunk[0].rows());
+
+        Matrix first = seed;
+        for (int d = 0; d < 14; d++) {
+            first = first.times(ifs.get(0));
+        }
+
+        for (int r = 0; r < 2; r++) {
+            for (int c = 0; c < 3; c++) {
+                assertEquals(first.val(r, c), chunk[0].val(r, c), Util.EPS);
+            }
+        }
+    }
+
+    @Test
+    public void testIndexed() {
+        IFS ifs = IFS.quadPulse(1.2);
+        double l = 1.0 / (3.0 + 2 * Math.cos(Math.PI - 1.2));
+
+        assertEquals(5, ifs.size());
+        assertEquals(ifs.first(), ifs.get(0));
+        assertEquals(ifs.rest().rest().first(), ifs.get(2));
+        assertEquals(4, ifs.rest().size());
+        assertEquals(ifs.get(4), ifs.rest().get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> ifs.get(5));
+
+        for (int i = 0; i < ifs.size(); i++) {
+            assertEquals(l, ifs.contraction(i), Util.EPS);
+            assertEquals(l * l, ifs.determinant(i), Util.EPS);
+        }
+
+        // Not affine.
+        IFS projective = IFS.ifs(new Matrix(3, 3, new double[] {1, 0, .1, 0, 1, 0, 0, 0, 1}));
+        assertTrue(Double.isNaN(projective.contraction(0)));
+
+        IFS empty = IFS.empty();
+        assertTrue(empty.isEmpty());
+        assertEquals(0, empty.size());
+        assertTrue(ifs.rest().rest().rest().rest().rest().isEmpty());
+        assertThrows(RuntimeException.class, empty::first);
+        assertThrows(RuntimeException.class, empty::rest);
+
+        IFS prepended = ifs.rest().prepend(ifs.first());
+        assertEquals(reference(ifs, 3, sprite2D(0, 0, 1, 0)), prepended.iterate(3, sprite2D(0, 0, 1, 0)));
+        assertEquals(ifs.contraction(0), prepended.contraction(0));
+    }
+
+    @Test
+    public void testWeights() {
+        IFS ifs = IFS.trianglePulseReduced(.2);
+        assertNull(ifs.weights());
+
+        IFS weighted = ifs.weighted(1, 3);
+        assertArrayEquals(new double[] {1, 3}, weighted.weights());
+        assertArrayEquals(new double[] {3}, weighted.rest().weights());
+        assertEquals(ifs.iterate(4, sprite2D(0, 0, 1, 0)), weighted.iterate(4, sprite2D(0, 0, 1, 0)));
+
+        // Kept through map, dropped by prepend.
+        assertArrayEquals(new double[] {1, 3}, weighted.map(m -> m.scale2D(2)).weights());
+        assertNull(weighted.prepend(i(3)).weights());
+
+        assertThrows(IllegalArgumentException.class, () -> ifs.weighted(1));
+        assertThrows(IllegalArgumentException.class, () -> ifs.weighted(1, -1));
+    }
+
+    @Test
+    public void testMap() {
+        IFS ifs = IFS.trianglePulse(.4);
+        IFS scaled = ifs.map(m -> m.scale2D(.5));
+
+        for (int i = 0; i < ifs.size(); i++) {
+            assertEquals(ifs.get(i).scale2D(.5), scaled.get(i));
+            assertEquals(ifs.contraction(i) * .5, scaled.contraction(i), Util.EPS);
+        }
+    }
+}
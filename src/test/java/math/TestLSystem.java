@@ -0,0 +1,117 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestLSystem {
+
+    // Runner.kco.
+    private static Turtle kco(Turtle turtle, int level) {
+        if (level == 0) {
+            return turtle.forward(1);
+        }
+
+        Turtle nt = turtle.scale(1.0 / 3.0);
+        nt = kco(nt, level - 1).rotate(Math.PI / 3.0);
+        nt = kco(nt, level - 1).rotate(- 2 * Math.PI / 3.0);
+        nt = kco(nt, level - 1).rotate(Math.PI / 3.0);
+        return kco(nt, level - 1).scale(3.0);
+    }
+
+    // Runner.kcn.
+    private static Turtle kcn(Turtle turtle, int level) {
+        if (level == 0) {
+            return turtle.forward(1);
+        }
+
+        Turtle nt = turtle.move(1.0)
+                .rotate(5.0 * Math.PI / 6.0)
+                .scale(1.0 / Math.sqrt(3.0));
+
+        nt = kcn(nt, level - 1).rotate(Math.PI / 3.0);
+        return kcn(nt, level - 1)
+                .rotate(5 * Math.PI / 6.0)
+                .scale(Math.sqrt(3.0))
+                .move(1.0);
+    }
+
+    @Test
+    public void testKco() {
+        for (int level = 0; level <= 6; level++) {
+            double[] expected = kco(Turtle.t(), level).image().data();
+
+            assertArrayEquals(expected, LSystem.kco().image(level).data(), 0);
+            assertEquals(expected.length / 6, LSystem.kco().segments(level));
+        }
+    }
+
+    @Test
+    public void testKcn() {
+        for (int level = 0; level <= 10; level++) {
+            double[] expected = kcn(Turtle.t(), level).image().data();
+
+            assertArrayEquals(expected, LSystem.kcn().image(level).data(), 0);
+            assertEquals(expected.length / 6, LSystem.kcn().segments(level));
+        }
+    }
+
+    @Test
+    public void testBranches() {
+        // A fork, a stem and two branches at right angles.
+        LSystem fork = LSystem.of("F[+F][-F]")
+                .forward('F', 1)
+                .rotate('+', Math.PI / 2)
+                .rotate('-', -Math.PI / 2)
+                .push('[')
+                .pop(']');
+
+        Matrix expected = sprite2D(0, 0, 1, 0).concat(sprite2D(1, 0, 1, 1)).concat(sprite2D(1, 0, 1, -1));
+        assertEquals(expected, fork.image(0));
+
+        // Symbols without an operation are skipped.
+        LSystem plant = fork.rule('F', "FXF").move('Y', 1);
+        assertEquals(3 * 16, plant.segments(4));
+        assertEquals(plant.segments(4) * 2, plant.image(4).rows());
+
+        assertThrows(IllegalStateException.class, () -> LSystem.of("F]").forward('F', 1).pop(']').image(0));
+    }
+
+    @Test
+    public void testParallel() {
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool four = new ForkJoinPool(4);
+
+        LSystem plant = LSystem.of("X")
+                .rule('X', "F[+sX][-X]FX")
+                .rule('F', "FF")
+                .forward('F', 1)
+                .rotate('+', .4)
+                .rotate('-', -.4)
+                .scale('s', .5)
+                .push('[')
+                .pop(']');
+
+        Object[][] cases = {{LSystem.kco(), 8}, {LSystem.kcn(), 17}, {plant, 10}};
+
+        for (Object[] c : cases) {
+            LSystem ls = (LSystem) c[0];
+            int depth = (Integer) c[1];
+
+            Matrix sequential = ls.image(depth);
+            Matrix parallel = ls.image(depth, four);
+
+            assertTrue(sequential.rows() >= 4 * LSystem.PARALLEL_SEGMENTS);
+            assertEquals(sequential, parallel);
+
+            // Start states come from the nets alone, so the pool does not matter.
+            assertArrayEquals(parallel.data(), ls.image(depth, one).data(), 0);
+        }
+
+        one.shutdown();
+        four.shutdown();
+    }
+}
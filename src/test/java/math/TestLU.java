@@ -0,0 +1,108 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+import static math.Util.*;
+
+public class TestLU {
+
+    private static Matrix random(int n, long seed) {
+        Random r = new Random(seed);
+        double[] data = new double[n * n];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = r.nextDouble() - .5;
+        }
+
+        return new Matrix(n, n, data);
+    }
+
+    @Test
+    public void testClosedFormMatchesLU() {
+        for (int n = 2; n <= 4; n++) {
+            Matrix m = random(n, n);
+
+            assertTrue(Math.abs(m.determinant() - m.lu().determinant()) <= EPS);
+            assertEquals(m.lu().inverse(), m.inverse());
+            assertEquals(i(n), m.times(m.inverse()));
+        }
+    }
+
+    @Test
+    public void testLarge() {
+        Matrix m = random(12, 12);
+
+        assertEquals(i(12), m.times(m.inverse()));
+        assertEquals(i(12), m.inverse().times(m));
+
+        // det(AB) = det(A)det(B)
+        Matrix o = random(12, 13);
+        assertTrue(Math.abs(m.times(o).determinant() - (m.determinant() * o.determinant())) <= EPS);
+    }
+
+    @Test
+    public void testSolve() {
+        Matrix m = random(7, 1);
+        Matrix x = random(7, 2);
+
+        LU lu = m.lu();
+        assertEquals(x, lu.solve(m.times(x)));
+    }
+
+    @Test
+    public void testSingular() {
+        Matrix m = new Matrix(3, 3, new double[] {1, 2, 3, 2, 4, 6, 1, 0, 1});
+
+        assertTrue(m.lu().isSingular());
+        assertEquals(0.0, m.determinant());
+        assertThrows(ArithmeticException.class, m::inverse);
+        assertThrows(ArithmeticException.class, () -> m.lu().inverse());
+
+        // Two equal rows.
+        double[] data = random(6, 3).data().clone();
+        System.arraycopy(data, 0, data, 6, 6);
+
+        Matrix big = new Matrix(6, 6, data);
+        assertTrue(big.lu().isSingular());
+        assertThrows(ArithmeticException.class, big::inverse);
+    }
+
+    @Test
+    public void testNearlySingular() {
+        // Singular, but rounding leaves the closed form determinant just off zero.
+        double[] tenths = new double[25];
+        for (int i = 0; i < tenths.length; i++) {
+            tenths[i] = (i + 1) / 10.0;
+        }
+
+        Matrix m = new Matrix(3, 3, Arrays.copyOf(tenths, 9));
+        assertTrue(m.lu().isSingular());
+        assertThrows(ArithmeticException.class, m::inverse);
+
+        // Same answer whatever the size.
+        Matrix big = new Matrix(5, 5, tenths);
+        assertTrue(big.lu().isSingular());
+        assertThrows(ArithmeticException.class, big::inverse);
+    }
+
+    @Test
+    public void testConditionEstimate() {
+        assertEquals(1.0, i(6).lu().conditionEstimate(), EPS);
+
+        Matrix ill = new Matrix(5, 5, new double[] {
+                1, 0, 0, 0, 0,
+                0, 1, 0, 0, 0,
+                0, 0, 1e-9, 0, 0,
+                0, 0, 0, 1, 0,
+                0, 0, 0, 0, 1
+        });
+
+        assertEquals(1e9, ill.lu().conditionEstimate(), 1);
+        assertFalse(ill.lu().isSingular());
+    }
+}
@@ -0,0 +1,58 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+import static math.Util.*;
+
+public class TestLineMesh {
+
+    @Test
+    public void testCurveIsOnePath() {
+        // Halves of the unit segment, an open path of 2^6 segments.
+        IFS halves = IFS.ifs(Affine2D.i().scale2D(.5), Affine2D.i().scale2D(.5).shift2D(.5, 0));
+        LineMesh mesh = LineMesh.of(halves.iterate(6, sprite2D(0, 0, 1, 0)));
+
+        assertEquals(64, mesh.segments());
+        assertEquals(65, mesh.vertices().rows());
+
+        int ends = 0;
+        for (int deg : mesh.degrees()) {
+            assertTrue(deg == 1 || deg == 2);
+            ends += deg == 1 ? 1 : 0;
+        }
+        assertEquals(2, ends);
+    }
+
+    @Test
+    public void testIFSLines() {
+        Matrix lines = IFS.quadPulse(Math.PI / 3).iterate(4, sprite2D(0, 0, 1, 0));
+        LineMesh mesh = LineMesh.of(lines);
+
+        // At least every shared endpoint collapses.
+        assertTrue(mesh.vertices().rows() <= mesh.segments() + 1);
+        assertEquals(lines, mesh.toLines());
+    }
+
+    @Test
+    public void testMergeWithinEPS() {
+        // Points straddling a hash cell boundary still merge.
+        double edge = 2 * EPS * 1000;
+
+        LineMesh mesh = LineMesh.of(sprite2D(
+                0, 0, edge - (EPS / 4), 1,
+                edge + (EPS / 4), 1, 5, 5,
+                5 + (2 * EPS), 5, 0, 0
+        ));
+
+        assertEquals(4, mesh.vertices().rows());
+        assertArrayEquals(new int[] {0, 1, 1, 2, 3, 0}, mesh.indices());
+    }
+
+    @Test
+    public void testItemHash() {
+        assertEquals(Item.point2D(1, 1).hashCode(), Item.point2D(1 + 1e-7, 1).hashCode());
+        assertNotEquals(Item.point2D(1, 1).hashCode(), Item.vector2D(1, 1).hashCode());
+    }
+}
@@ -22,4 +22,34 @@ public class TestMatrix {
 
         assertNotEquals(i(3), i(3).rotate2D(.1).times(i(3).rotate2D(.2).inverse()));
     }
+
+    @Test
+    public void testConcatFlat() {
+        Matrix m = sprite2D(0, 0, 1, 0).concat(sprite2D(2, 3)).concat(Item.point2D(4, 5));
+
+        assertEquals(sprite2D(0, 0, 1, 0, 2, 3, 4, 5), m);
+        assertEquals(12, m.flat().remaining());
+        assertEquals(3.0, m.flat().get(7));
+        assertTrue(m.flat().isReadOnly());
+    }
+
+    @Test
+    public void testPointKernel() {
+        int points = PointKernel.PARALLEL_THRESHOLD * 5;
+        double[] coords = new double[points * 2];
+
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = Math.sin(i);
+        }
+
+        Matrix sprite = sprite2D(coords);
+        Matrix t = i(3).scale2D(.3).rotate2D(1.1).shift2D(2, -1);
+        Matrix g = new Matrix(3, 3, new double[] {1, 2, .1, 3, 4, .2, 5, 6, 1});
+
+        Matrix expected = new Matrix(points, 3, mult(sprite.data(), points, 3, t.data(), 3, 3));
+        assertEquals(expected, sprite.times(t));
+
+        expected = new Matrix(points, 3, mult(sprite.data(), points, 3, g.data(), 3, 3));
+        assertEquals(expected, sprite.times(g));
+    }
 }
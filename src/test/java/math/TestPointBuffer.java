@@ -0,0 +1,45 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestPointBuffer {
+
+    @Test
+    public void testIterateMatchesMatrix() {
+        PointBuffer.Pool pool = new PointBuffer.Pool();
+        Matrix seed = sprite2D(0, 0, 1, 0);
+
+        for (int depth = 0; depth <= 4; depth++) {
+            try (PointBuffer pb = IFS.quadPulse(Math.PI / 3).iterate(depth, seed, pool)) {
+                assertEquals(IFS.quadPulse(Math.PI / 3).iterate(depth, seed), pb.toMatrix());
+            }
+        }
+    }
+
+    @Test
+    public void testPoolReuse() {
+        PointBuffer.Pool pool = new PointBuffer.Pool();
+
+        PointBuffer first = pool.acquire(1000);
+        assertEquals(1000, first.points());
+        assertEquals(1024, first.capacity());
+
+        first.close();
+        assertTrue(first.isClosed());
+        assertEquals(1024 * 3 * 8, pool.retainedBytes());
+        assertThrows(IllegalStateException.class, first::buffer);
+
+        PointBuffer second = pool.acquire(600);
+        assertSame(first, second);
+        assertFalse(second.isClosed());
+        assertEquals(0, pool.retainedBytes());
+
+        second.close();
+        pool.trim();
+        assertEquals(0, pool.retainedBytes());
+        assertNotSame(first, pool.acquire(1000));
+    }
+}
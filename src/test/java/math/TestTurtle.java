@@ -0,0 +1,64 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Matrix.*;
+
+public class TestTurtle {
+
+    // Runner.kco.
+    private static Turtle koch(Turtle turtle, int level) {
+        if (level == 0) {
+            return turtle.forward(1);
+        }
+
+        Turtle nt = turtle.scale(1.0 / 3.0);
+        nt = koch(nt, level - 1).rotate(Math.PI / 3.0);
+        nt = koch(nt, level - 1).rotate(- 2 * Math.PI / 3.0);
+        nt = koch(nt, level - 1).rotate(Math.PI / 3.0);
+        return koch(nt, level - 1).scale(3.0);
+    }
+
+    @Test
+    public void testForward() {
+        Turtle t = Turtle.t().forward(1).rotate(Math.PI / 2).move(1).forward(2);
+
+        assertEquals(sprite2D(0, 0, 1, 0).concat(sprite2D(1, 1, 1, 3)), t.image());
+        assertEquals(2, t.segments());
+        assertNull(Turtle.t().image());
+    }
+
+    @Test
+    public void testBranching() {
+        Turtle trunk = Turtle.t().forward(1);
+
+        Turtle left = trunk.rotate(Math.PI / 2).forward(1);
+        Turtle right = trunk.rotate(-Math.PI / 2).forward(1);
+        Turtle again = left.forward(1);
+
+        assertEquals(sprite2D(0, 0, 1, 0), trunk.image());
+        assertEquals(sprite2D(0, 0, 1, 0).concat(sprite2D(1, 0, 1, 1)), left.image());
+        assertEquals(sprite2D(0, 0, 1, 0).concat(sprite2D(1, 0, 1, -1)), right.image());
+        assertEquals(left.image().concat(sprite2D(1, 1, 1, 2)), again.image());
+
+        // Branching from left again does not disturb again.
+        Turtle other = left.move(5).forward(1);
+        assertEquals(left.image().concat(sprite2D(1, 6, 1, 7)), other.image());
+        assertEquals(left.image().concat(sprite2D(1, 1, 1, 2)), again.image());
+    }
+
+    @Test
+    public void testKoch() {
+        // Each segment of level n + 1 is a third of one at level n, so ends match.
+        Matrix three = koch(Turtle.t(), 3).image();
+        assertEquals(2 * 64, three.rows());
+        assertEquals(1, three.val(three.rows() - 1, 0), Util.EPS);
+        assertEquals(0, three.val(three.rows() - 1, 1), Util.EPS);
+
+        // Linear time, so level 10 is quick.
+        Turtle ten = koch(Turtle.t(), 10);
+        assertEquals(1 << 20, ten.segments());
+        assertEquals(1, ten.image().val((2 << 20) - 1, 0), Util.EPS);
+    }
+}
@@ -0,0 +1,103 @@
+package math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+/**
+ * The SIMD kernels must match the scalar code bit for bit.
+ * Only runs where VectorKernel is available, i.e. from the multi-release jar on Java 17+.
+ */
+public class TestVectorKernel {
+
+    private static double[] randomPoints(int points, long seed) {
+        Random r = new Random(seed);
+        double[] data = new double[points * 3];
+
+        for (int i = 0; i < data.length; i += 3) {
+            data[i] = (r.nextDouble() - .5) * Math.pow(10, r.nextInt(20) - 10);
+            data[i + 1] = (r.nextDouble() - .5) * Math.pow(10, r.nextInt(20) - 10);
+
+            // Mostly points, some vectors and weighted items.
+            int kind = r.nextInt(4);
+            data[i + 2] = kind == 0 ? 0 : kind == 1 ? r.nextDouble() * 3 : 1;
+        }
+
+        return data;
+    }
+
+    @Test
+    public void testTransformBitEqual() {
+        assumeTrue(VectorKernel.available());
+
+        Affine2D[] ts = new Affine2D[] {
+                Affine2D.i(),
+                Affine2D.i().scale2D(.3).rotate2D(1.1).shift2D(2, -1),
+                Affine2D.of(1e-300, -3e7, 4.5, Math.PI, -0.0, 1e300)
+        };
+
+        for (int points : new int[] {VectorKernel.MIN_POINTS, 1001, 65537}) {
+            double[] src = randomPoints(points, points);
+
+            for (Affine2D t : ts) {
+                double[] scalar = new double[src.length];
+                double[] vector = new double[src.length];
+
+                PointKernel.transformScalar(src, 0, scalar, 0, points, t);
+                VectorKernel.transform(src, 0, vector, 0, points, t);
+
+                for (int i = 0; i < src.length; i++) {
+                    assertEquals(Double.doubleToRawLongBits(scalar[i]), Double.doubleToRawLongBits(vector[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testScaleBitEqual() {
+        assumeTrue(VectorKernel.available());
+
+        double[] src = randomPoints(1003, 7);
+        double[] vector = new double[src.length];
+        VectorKernel.scale(src, vector, -1.7);
+
+        for (int i = 0; i < src.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(src[i] * -1.7), Double.doubleToRawLongBits(vector[i]));
+        }
+    }
+
+    @Test
+    public void testIFSUnchanged() {
+        assumeTrue(VectorKernel.available());
+
+        Matrix seed = Matrix.sprite2D(0, 0, 1, 0);
+        IFS ifs = IFS.quadPulse(Math.PI / 3);
+
+        Matrix vector = ifs.iterate(5, seed);
+
+        double[] scalar = seed.data();
+        int rows = seed.rows();
+
+        for (int level = 0; level < 5; level++) {
+            double[] next = new double[scalar.length * 5];
+
+            int slot = 0;
+            for (IFS s = ifs; !s.isEmpty(); s = s.rest(), slot++) {
+                PointKernel.transformScalar(scalar, 0, next, slot * scalar.length, rows, Affine2D.of(s.first()));
+            }
+
+            scalar = next;
+            rows *= 5;
+        }
+
+        double[] v = vector.data();
+        assertEquals(scalar.length, v.length);
+
+        for (int i = 0; i < v.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(scalar[i]), Double.doubleToRawLongBits(v[i]));
+        }
+    }
+}
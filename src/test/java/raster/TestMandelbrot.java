@@ -0,0 +1,128 @@
+package raster;
+
+import math.Item;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static math.Item.*;
+import static math.Matrix.*;
+
+public class TestMandelbrot {
+
+    // The Item based coloring the kernel replaces.
+    private static int reference(double cx, double cy, int iterations) {
+        Item c = vector2Dp(cx, cy);
+        Item z = c;
+
+        for (int i = 0; i < iterations; i++) {
+            double x = z.val(0);
+            double y = z.val(1);
+
+            z = vector2Dp((x * x) - (y * y), 2.0 * x * y).plus(c);
+
+            if ((x * x) + (y * y) > 4) {
+                Item color = item2D(
+                        (iterations - (i + 1.0)) / iterations,
+                        Math.pow((iterations - (i + 1.0)) / iterations, 2.0), 1.0)
+                        .times(i(3).rotate2D(i * Math.PI / 12.0).shift2D(1.0, 1.0).scale2D(.5));
+
+                return Raster.argb(color.val(0), color.val(1), color.val(2));
+            }
+        }
+
+        return Raster.argb(0, 0, 0);
+    }
+
+    @Test
+    public void testColors() {
+        for (int iterations : new int[] {1, 20, 100, 500}) {
+            Mandelbrot m = new Mandelbrot(iterations);
+
+            for (int r = 0; r <= 90; r++) {
+                for (int c = 0; c <= 120; c++) {
+                    double x = -2.2 + (c * (3.2 / 120));
+                    double y = -1.2 + (r * (2.4 / 90));
+
+                    assertEquals(reference(x, y, iterations), m.color(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInterior() {
+        Mandelbrot m = new Mandelbrot(1000);
+
+        // Cardioid, bulb, and a period 3 bulb caught by the cycle check.
+        assertEquals(-1, m.escape(0, 0));
+        assertEquals(-1, m.escape(.2, .3));
+        assertEquals(-1, m.escape(-1, .1));
+        assertEquals(-1, m.escape(-.12, .75));
+        assertEquals(-1, m.escape(-1.75, 0));
+
+        assertEquals(0, m.escape(3, 0));
+        assertEquals(1, m.escape(1, 1));
+
+        assertEquals(-1, new Mandelbrot(0).escape(3, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Mandelbrot(-1));
+    }
+
+    @Test
+    public void testMirrorRunnerSteps() {
+        // Runner's window and step sizes, which are not dyadic.
+        Mandelbrot m = new Mandelbrot(100);
+        Raster.PixelFunction plain = m::color;
+
+        for (String step : new String[] {"0.01", "0.0125", "0.0075"}) {
+            for (String y : new String[] {"0", "0.5", "-1.005"}) {
+                Raster expected = new Raster(900, 900);
+                expected.center(new BigDecimal("-0.5"), new BigDecimal(y));
+                expected.stepSize(new BigDecimal(step));
+                expected.render(plain);
+
+                Raster r = new Raster(900, 900);
+                r.center(new BigDecimal("-0.5"), new BigDecimal(y));
+                r.stepSize(new BigDecimal(step));
+                r.render(m);
+
+                assertArrayEquals(expected.pixels(), r.pixels());
+
+                // Off center, y = 0 may fall off the pixel grid, then nothing is mirrored.
+                if (y.equals("0")) {
+                    assertEquals(900 * 451, r.lastPixels());
+                }
+
+                r.invalidate();
+                while (r.refine(m)) {
+                    // Every pass.
+                }
+
+                assertArrayEquals(expected.pixels(), r.pixels());
+            }
+        }
+    }
+
+    @Test
+    public void testRaster() {
+        Mandelbrot m = new Mandelbrot(200);
+
+        Raster r = new Raster(161, 121);
+        r.center(new BigDecimal("-0.5"), BigDecimal.ZERO);
+        r.stepSize(new BigDecimal("0.01953125"));
+        r.render(m);
+
+        // The lower half is mirrored from the upper.
+        assertTrue(r.lastPixels() < 161 * 121);
+
+        for (int row = 0; row < 121; row++) {
+            for (int c = 0; c < 161; c++) {
+                double x = r.cornerX() + (.01953125 * c);
+                double y = r.cornerY() + (.01953125 * row);
+
+                assertEquals(reference(x, y, 200), r.pixel(c, row));
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRaster {
+
+    // Distinct color per point, so a misplaced pixel shows.
+    private static final Raster.PixelFunction F = (x, y) -> Raster.argb(x, y, (x * y) + .5);
+
+    @Test
+    public void testStride() {
+        Raster r = new Raster(100, 30);
+
+        assertEquals(100, r.width());
+        assertEquals(30, r.height());
+        assertEquals(0, r.stride() % 16);
+        assertTrue(r.stride() >= 100 && r.stride() < 116);
+        assertTrue(r.pixels().length >= r.stride() * 30);
+    }
+
+    @Test
+    public void testResize() {
+        Raster r = new Raster(300, 200);
+        int[] pixels = r.pixels();
+
+        // Shrinking keeps the buffer.
+        r.resizePixels(150, 90);
+        assertSame(pixels, r.pixels());
+        assertEquals(150, r.width());
+
+        r.resizePixels(300, 200);
+        assertSame(pixels, r.pixels());
+
+        // Growing replaces it.
+        r.resizePixels(300, 201);
+        assertNotSame(pixels, r.pixels());
+
+        assertThrows(IllegalArgumentException.class, () -> r.resizePixels(-1, 10));
+    }
+
+    @Test
+    public void testRender() {
+        // Not a whole number of tiles either way.
+        Raster r = new Raster(200, 150);
+        r.center(new BigDecimal("0.25"), new BigDecimal("-0.5"));
+        r.stepSize(new BigDecimal("0.005"));
+
+        r.render(F);
+
+        assertEquals(-.25, r.cornerX(), 1e-12);
+        assertEquals(-.875, r.cornerY(), 1e-12);
+        assertEquals(4 * 3, r.lastTiles());
+
+        for (int row = 0; row < r.height(); row++) {
+            for (int c = 0; c < r.width(); c++) {
+                double x = r.cornerX() + (.005 * c);
+                double y = r.cornerY() + (.005 * row);
+
+                assertEquals(F.color(x, y), r.pixel(c, row));
+            }
+        }
+    }
+
+    @Test
+    public void testPools() {
+        Raster r = new Raster(333, 222);
+        r.stepSize(new BigDecimal("0.003"));
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        r.render(F, single);
+        single.shutdown();
+        int[] one = r.pixels().clone();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        r.render(F, pool);
+        pool.shutdown();
+
+        assertArrayEquals(one, r.pixels());
+    }
+
+    @Test
+    public void testPan() {
+        // Dyadic center and step, so full renders and pans evaluate the same doubles.
+        Raster r = new Raster(200, 150);
+        r.center(new BigDecimal("0.25"), new BigDecimal("-0.5"));
+        r.stepSize(new BigDecimal("0.0078125"));
+        r.render(F);
+
+        int[][] pans = {{50, 0}, {0, -50}, {-7, 13}, {130, 90}, {-199, -1}, {0, 0}, {300, 0}, {3, -149}};
+
+        for (int[] p : pans) {
+            BigDecimal x = r.x().add(r.stepSize().multiply(BigDecimal.valueOf(p[0])));
+            BigDecimal y = r.y().add(r.stepSize().multiply(BigDecimal.valueOf(p[1])));
+
+            r.pan(p[0], p[1], F);
+
+            assertEquals(0, x.compareTo(r.x()));
+            assertEquals(0, y.compareTo(r.y()));
+
+            // Only the strips are evaluated.
+            if (Math.abs(p[0]) < 200 && Math.abs(p[1]) < 150) {
+                long exposed = (200L * 150) - ((200L - Math.abs(p[0])) * (150 - Math.abs(p[1])));
+                assertEquals(exposed, r.lastPixels());
+            }
+
+            Raster fresh = new Raster(200, 150);
+            fresh.center(x, y);
+            fresh.stepSize(r.stepSize());
+            fresh.render(F);
+
+            for (int row = 0; row < 150; row++) {
+                for (int c = 0; c < 200; c++) {
+                    assertEquals(fresh.pixel(c, row), r.pixel(c, row));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPanInvalid() {
+        Raster r = new Raster(100, 100);
+        r.render(F);
+
+        // A new step size, or size, renders in full.
+        r.stepSize(new BigDecimal("0.02"));
+        r.pan(10, 0, F);
+        assertEquals(100 * 100, r.lastPixels());
+
+        r.stepSize(new BigDecimal("0.020"));
+        r.pan(10, 0, F);
+        assertEquals(10 * 100, r.lastPixels());
+
+        r.resizePixels(90, 100);
+        r.pan(10, 0, F);
+        assertEquals(90 * 100, r.lastPixels());
+    }
+
+    @Test
+    public void testRefine() {
+        // Not a whole number of coarse blocks either way.
+        Raster full = new Raster(203, 150);
+        full.stepSize(new BigDecimal("0.0078125"));
+        full.render(F);
+
+        AtomicLong calls = new AtomicLong();
+        Raster.PixelFunction counted = (x, y) -> {
+            calls.incrementAndGet();
+            return F.color(x, y);
+        };
+
+        Raster r = new Raster(203, 150);
+        r.stepSize(new BigDecimal("0.0078125"));
+
+        // 1/16 of the pixels first, each filling its block.
+        assertTrue(r.refine(counted));
+        assertEquals(51 * 38, calls.get());
+        assertEquals(51 * 38, r.lastPixels());
+
+        for (int row = 0; row < 150; row++) {
+            for (int c = 0; c < 203; c++) {
+                assertEquals(full.pixel(c - (c % 4), row - (row % 4)), r.pixel(c, row));
+            }
+        }
+
+        assertTrue(r.refine(counted));
+        assertFalse(r.complete());
+        assertFalse(r.refine(counted));
+        assertTrue(r.complete());
+
+        // Every pixel evaluated once, and the same as the full render.
+        assertEquals(203 * 150, calls.get());
+
+        for (int row = 0; row < 150; row++) {
+            for (int c = 0; c < 203; c++) {
+                assertEquals(full.pixel(c, row), r.pixel(c, row));
+            }
+        }
+
+        // Done until the view changes.
+        assertFalse(r.refine(counted));
+        assertEquals(203 * 150, calls.get());
+
+        r.move(5, 0);
+        assertTrue(r.refine(counted));
+
+        r.invalidate();
+        assertFalse(r.complete());
+    }
+
+    @Test
+    public void testMirror() {
+        Raster.PixelFunction even = (x, y) -> Raster.argb(x, y * y, .5);
+        Raster.PixelFunction mirrored = new Raster.PixelFunction() {
+            @Override
+            public int color(double x, double y) {
+                return even.color(x, y);
+            }
+
+            @Override
+            public boolean symmetric() {
+                return true;
+            }
+        };
+
+        // y = 0 at several rows, including off center and off screen.
+        String[] centers = {"0", "0.0625", "-0.375", "0.5", "2"};
+
+        for (String center : centers) {
+            Raster plain = new Raster(130, 100);
+            plain.center(BigDecimal.ZERO, new BigDecimal(center));
+            plain.stepSize(new BigDecimal("0.0078125"));
+            plain.render(even);
+
+            Raster r = new Raster(130, 100);
+            r.center(BigDecimal.ZERO, new BigDecimal(center));
+            r.stepSize(new BigDecimal("0.0078125"));
+            r.render(mirrored);
+
+            assertArrayEquals(plain.pixels(), r.pixels());
+
+            if (center.equals("0")) {
+                // Only one side, and the row on y = 0, is evaluated.
+                assertEquals(130 * 51, r.lastPixels());
+            }
+
+            // Progressive passes mirror too, where the block grids line up.
+            r.invalidate();
+            long evaluated = 0;
+
+            do {
+                r.refine(mirrored);
+                evaluated += r.lastPixels();
+            } while (!r.complete());
+
+            assertArrayEquals(plain.pixels(), r.pixels());
+
+            if (center.equals("0")) {
+                assertTrue(evaluated < 130 * 100 * 3 / 4);
+            }
+        }
+    }
+
+    @Test
+    public void testArgb() {
+        assertEquals(0xFF000000, Raster.argb(0, 0, 0));
+        assertEquals(0xFFFFFFFF, Raster.argb(1, 1, 1));
+        assertEquals(0xFFFF0080, Raster.argb(2, -1, .5));
+    }
+}